@@ -22,8 +22,9 @@ public class SVMParser extends Parser {
 	public static final int
 		PUSH=1, POP=2, ADD=3, SUB=4, MULT=5, DIV=6, STOREW=7, LOADW=8, BRANCH=9, 
 		BRANCHEQ=10, BRANCHLESSEQ=11, JS=12, LOADRA=13, STORERA=14, LOADTM=15, 
-		STORETM=16, LOADFP=17, STOREFP=18, COPYFP=19, LOADHP=20, STOREHP=21, PRINT=22, 
-		HALT=23, COL=24, LABEL=25, INTEGER=26, COMMENT=27, WHITESP=28, ERR=29;
+		STORETM=16, LOADFP=17, STOREFP=18, COPYFP=19, LOADHP=20, STOREHP=21, NEW=22, 
+		PRINT=23, HALT=24, COL=25, LABEL=26, INTEGER=27, COMMENT=28, WHITESP=29, 
+		ERR=30;
 	public static final int
 		RULE_assembly = 0, RULE_instruction = 1;
 	private static String[] makeRuleNames() {
@@ -37,8 +38,8 @@ public class SVMParser extends Parser {
 		return new String[] {
 			null, "'push'", "'pop'", "'add'", "'sub'", "'mult'", "'div'", "'sw'", 
 			"'lw'", "'b'", "'beq'", "'bleq'", "'js'", "'lra'", "'sra'", "'ltm'", 
-			"'stm'", "'lfp'", "'sfp'", "'cfp'", "'lhp'", "'shp'", "'print'", "'halt'", 
-			"':'"
+			"'stm'", "'lfp'", "'sfp'", "'cfp'", "'lhp'", "'shp'", "'new'", "'print'", 
+			"'halt'", "':'"
 		};
 	}
 	private static final String[] _LITERAL_NAMES = makeLiteralNames();
@@ -46,8 +47,8 @@ public class SVMParser extends Parser {
 		return new String[] {
 			null, "PUSH", "POP", "ADD", "SUB", "MULT", "DIV", "STOREW", "LOADW", 
 			"BRANCH", "BRANCHEQ", "BRANCHLESSEQ", "JS", "LOADRA", "STORERA", "LOADTM", 
-			"STORETM", "LOADFP", "STOREFP", "COPYFP", "LOADHP", "STOREHP", "PRINT", 
-			"HALT", "COL", "LABEL", "INTEGER", "COMMENT", "WHITESP", "ERR"
+			"STORETM", "LOADFP", "STOREFP", "COPYFP", "LOADHP", "STOREHP", "NEW", 
+			"PRINT", "HALT", "COL", "LABEL", "INTEGER", "COMMENT", "WHITESP", "ERR"
 		};
 	}
 	private static final String[] _SYMBOLIC_NAMES = makeSymbolicNames();
@@ -97,10 +98,9 @@ public class SVMParser extends Parser {
 	public ATN getATN() { return _ATN; }
 
 
-	public int[] code = new int[ExecuteVM.CODESIZE];
-	private int i = 0;
-	private Map<String,Integer> labelDef = new HashMap<>();
-	private Map<Integer,String> labelRef = new HashMap<>();
+	private final Assembler asm = new Assembler();
+
+	public Assembler assembler() { return asm; } // code and labels, see Assembler
 
 	public SVMParser(TokenStream input) {
 		super(input);
@@ -144,7 +144,7 @@ public class SVMParser extends Parser {
 			setState(7);
 			_errHandler.sync(this);
 			_la = _input.LA(1);
-			while ((((_la) & ~0x3f) == 0 && ((1L << _la) & ((1L << PUSH) | (1L << POP) | (1L << ADD) | (1L << SUB) | (1L << MULT) | (1L << DIV) | (1L << STOREW) | (1L << LOADW) | (1L << BRANCH) | (1L << BRANCHEQ) | (1L << BRANCHLESSEQ) | (1L << JS) | (1L << LOADRA) | (1L << STORERA) | (1L << LOADTM) | (1L << STORETM) | (1L << LOADFP) | (1L << STOREFP) | (1L << COPYFP) | (1L << LOADHP) | (1L << STOREHP) | (1L << PRINT) | (1L << HALT) | (1L << LABEL))) != 0)) {
+			while ((((_la) & ~0x3f) == 0 && ((1L << _la) & ((1L << PUSH) | (1L << POP) | (1L << ADD) | (1L << SUB) | (1L << MULT) | (1L << DIV) | (1L << STOREW) | (1L << LOADW) | (1L << BRANCH) | (1L << BRANCHEQ) | (1L << BRANCHLESSEQ) | (1L << JS) | (1L << LOADRA) | (1L << STORERA) | (1L << LOADTM) | (1L << STORETM) | (1L << LOADFP) | (1L << STOREFP) | (1L << COPYFP) | (1L << LOADHP) | (1L << STOREHP) | (1L << NEW) | (1L << PRINT) | (1L << HALT) | (1L << LABEL))) != 0)) {
 				{
 				{
 				setState(4);
@@ -157,9 +157,7 @@ public class SVMParser extends Parser {
 			}
 			setState(10);
 			match(EOF);
-			 for (Integer j: labelRef.keySet())
-											code[j]=labelDef.get(labelRef.get(j));
-										
+			asm.finish();
 			}
 		}
 		catch (RecognitionException re) {
@@ -200,6 +198,7 @@ public class SVMParser extends Parser {
 		public TerminalNode COPYFP() { return getToken(SVMParser.COPYFP, 0); }
 		public TerminalNode LOADHP() { return getToken(SVMParser.LOADHP, 0); }
 		public TerminalNode STOREHP() { return getToken(SVMParser.STOREHP, 0); }
+		public TerminalNode NEW() { return getToken(SVMParser.NEW, 0); }
 		public TerminalNode PRINT() { return getToken(SVMParser.PRINT, 0); }
 		public TerminalNode HALT() { return getToken(SVMParser.HALT, 0); }
 		public InstructionContext(ParserRuleContext parent, int invokingState) {
@@ -225,7 +224,7 @@ public class SVMParser extends Parser {
 		InstructionContext _localctx = new InstructionContext(_ctx, getState());
 		enterRule(_localctx, 2, RULE_instruction);
 		try {
-			setState(71);
+			setState(73);
 			_errHandler.sync(this);
 			switch ( getInterpreter().adaptivePredict(_input,1,_ctx) ) {
 			case 1:
@@ -235,8 +234,7 @@ public class SVMParser extends Parser {
 				match(PUSH);
 				setState(14);
 				((InstructionContext)_localctx).n = match(INTEGER);
-				code[i++] = PUSH;
-							              code[i++] = Integer.parseInt((((InstructionContext)_localctx).n!=null?((InstructionContext)_localctx).n.getText():null));
+				asm.op(Opcodes.PUSH, Integer.parseInt((((InstructionContext)_localctx).n!=null?((InstructionContext)_localctx).n.getText():null)));
 				}
 				break;
 			case 2:
@@ -246,8 +244,7 @@ public class SVMParser extends Parser {
 				match(PUSH);
 				setState(17);
 				((InstructionContext)_localctx).l = match(LABEL);
-				code[i++] = PUSH;
-					    		             labelRef.put(i++,(((InstructionContext)_localctx).l!=null?((InstructionContext)_localctx).l.getText():null));
+				asm.op(Opcodes.PUSH, (((InstructionContext)_localctx).l!=null?((InstructionContext)_localctx).l.getText():null));
 				}
 				break;
 			case 3:
@@ -255,7 +252,7 @@ public class SVMParser extends Parser {
 				{
 				setState(19);
 				match(POP);
-				code[i++] = POP;
+				asm.op(Opcodes.POP);
 				}
 				break;
 			case 4:
@@ -263,7 +260,7 @@ public class SVMParser extends Parser {
 				{
 				setState(21);
 				match(ADD);
-				code[i++] = ADD;
+				asm.op(Opcodes.ADD);
 				}
 				break;
 			case 5:
@@ -271,7 +268,7 @@ public class SVMParser extends Parser {
 				{
 				setState(23);
 				match(SUB);
-				code[i++] = SUB;
+				asm.op(Opcodes.SUB);
 				}
 				break;
 			case 6:
@@ -279,7 +276,7 @@ public class SVMParser extends Parser {
 				{
 				setState(25);
 				match(MULT);
-				code[i++] = MULT;
+				asm.op(Opcodes.MULT);
 				}
 				break;
 			case 7:
@@ -287,7 +284,7 @@ public class SVMParser extends Parser {
 				{
 				setState(27);
 				match(DIV);
-				code[i++] = DIV;
+				asm.op(Opcodes.DIV);
 				}
 				break;
 			case 8:
@@ -295,7 +292,7 @@ public class SVMParser extends Parser {
 				{
 				setState(29);
 				match(STOREW);
-				code[i++] = STOREW;
+				asm.op(Opcodes.STOREW);
 				}
 				break;
 			case 9:
@@ -303,7 +300,7 @@ public class SVMParser extends Parser {
 				{
 				setState(31);
 				match(LOADW);
-				code[i++] = LOADW;
+				asm.op(Opcodes.LOADW);
 				}
 				break;
 			case 10:
@@ -313,7 +310,7 @@ public class SVMParser extends Parser {
 				((InstructionContext)_localctx).l = match(LABEL);
 				setState(34);
 				match(COL);
-				labelDef.put((((InstructionContext)_localctx).l!=null?((InstructionContext)_localctx).l.getText():null),i);
+				asm.label((((InstructionContext)_localctx).l!=null?((InstructionContext)_localctx).l.getText():null));
 				}
 				break;
 			case 11:
@@ -323,8 +320,7 @@ public class SVMParser extends Parser {
 				match(BRANCH);
 				setState(37);
 				((InstructionContext)_localctx).l = match(LABEL);
-				code[i++] = BRANCH;
-				                       labelRef.put(i++,(((InstructionContext)_localctx).l!=null?((InstructionContext)_localctx).l.getText():null));
+				asm.op(Opcodes.BRANCH, (((InstructionContext)_localctx).l!=null?((InstructionContext)_localctx).l.getText():null));
 				}
 				break;
 			case 12:
@@ -334,8 +330,7 @@ public class SVMParser extends Parser {
 				match(BRANCHEQ);
 				setState(40);
 				((InstructionContext)_localctx).l = match(LABEL);
-				code[i++] = BRANCHEQ;
-				                        labelRef.put(i++,(((InstructionContext)_localctx).l!=null?((InstructionContext)_localctx).l.getText():null));
+				asm.op(Opcodes.BRANCHEQ, (((InstructionContext)_localctx).l!=null?((InstructionContext)_localctx).l.getText():null));
 				}
 				break;
 			case 13:
@@ -345,8 +340,7 @@ public class SVMParser extends Parser {
 				match(BRANCHLESSEQ);
 				setState(43);
 				((InstructionContext)_localctx).l = match(LABEL);
-				code[i++] = BRANCHLESSEQ;
-				                          labelRef.put(i++,(((InstructionContext)_localctx).l!=null?((InstructionContext)_localctx).l.getText():null));
+				asm.op(Opcodes.BRANCHLESSEQ, (((InstructionContext)_localctx).l!=null?((InstructionContext)_localctx).l.getText():null));
 				}
 				break;
 			case 14:
@@ -354,7 +348,7 @@ public class SVMParser extends Parser {
 				{
 				setState(45);
 				match(JS);
-				code[i++] = JS;
+				asm.op(Opcodes.JS);
 				}
 				break;
 			case 15:
@@ -362,7 +356,7 @@ public class SVMParser extends Parser {
 				{
 				setState(47);
 				match(LOADRA);
-				code[i++] = LOADRA;
+				asm.op(Opcodes.LOADRA);
 				}
 				break;
 			case 16:
@@ -370,7 +364,7 @@ public class SVMParser extends Parser {
 				{
 				setState(49);
 				match(LOADRA);
-				code[i++] = LOADRA;
+				asm.op(Opcodes.LOADRA);
 				}
 				break;
 			case 17:
@@ -378,7 +372,7 @@ public class SVMParser extends Parser {
 				{
 				setState(51);
 				match(STORERA);
-				code[i++] = STORERA;
+				asm.op(Opcodes.STORERA);
 				}
 				break;
 			case 18:
@@ -386,7 +380,7 @@ public class SVMParser extends Parser {
 				{
 				setState(53);
 				match(LOADTM);
-				code[i++] = LOADTM;
+				asm.op(Opcodes.LOADTM);
 				}
 				break;
 			case 19:
@@ -394,7 +388,7 @@ public class SVMParser extends Parser {
 				{
 				setState(55);
 				match(STORETM);
-				code[i++] = STORETM;
+				asm.op(Opcodes.STORETM);
 				}
 				break;
 			case 20:
@@ -402,7 +396,7 @@ public class SVMParser extends Parser {
 				{
 				setState(57);
 				match(LOADFP);
-				code[i++] = LOADFP;
+				asm.op(Opcodes.LOADFP);
 				}
 				break;
 			case 21:
@@ -410,7 +404,7 @@ public class SVMParser extends Parser {
 				{
 				setState(59);
 				match(STOREFP);
-				code[i++] = STOREFP;
+				asm.op(Opcodes.STOREFP);
 				}
 				break;
 			case 22:
@@ -418,7 +412,7 @@ public class SVMParser extends Parser {
 				{
 				setState(61);
 				match(COPYFP);
-				code[i++] = COPYFP;
+				asm.op(Opcodes.COPYFP);
 				}
 				break;
 			case 23:
@@ -426,7 +420,7 @@ public class SVMParser extends Parser {
 				{
 				setState(63);
 				match(LOADHP);
-				code[i++] = LOADHP;
+				asm.op(Opcodes.LOADHP);
 				}
 				break;
 			case 24:
@@ -434,23 +428,31 @@ public class SVMParser extends Parser {
 				{
 				setState(65);
 				match(STOREHP);
-				code[i++] = STOREHP;
+				asm.op(Opcodes.STOREHP);
 				}
 				break;
 			case 25:
 				enterOuterAlt(_localctx, 25);
 				{
 				setState(67);
-				match(PRINT);
-				code[i++] = PRINT;
+				match(NEW);
+				asm.op(Opcodes.NEW);
 				}
 				break;
 			case 26:
 				enterOuterAlt(_localctx, 26);
 				{
 				setState(69);
+				match(PRINT);
+				asm.op(Opcodes.PRINT);
+				}
+				break;
+			case 27:
+				enterOuterAlt(_localctx, 27);
+				{
+				setState(71);
 				match(HALT);
-				code[i++] = HALT;
+				asm.op(Opcodes.HALT);
 				}
 				break;
 			}
@@ -467,7 +469,7 @@ public class SVMParser extends Parser {
 	}
 
 	public static final String _serializedATN =
-		"\u0004\u0001\u001dJ\u0002\u0000\u0007\u0000\u0002\u0001\u0007\u0001\u0001"+
+		"\u0004\u0001\u001eL\u0002\u0000\u0007\u0000\u0002\u0001\u0007\u0001\u0001"+
 		"\u0000\u0005\u0000\u0006\b\u0000\n\u0000\f\u0000\t\t\u0000\u0001\u0000"+
 		"\u0001\u0000\u0001\u0000\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
 		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
@@ -479,49 +481,50 @@ public class SVMParser extends Parser {
 		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
 		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
 		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
-		"\u0003\u0001H\b\u0001\u0001\u0001\u0000\u0000\u0002\u0000\u0002\u0000"+
-		"\u0000a\u0000\u0007\u0001\u0000\u0000\u0000\u0002G\u0001\u0000\u0000\u0000"+
-		"\u0004\u0006\u0003\u0002\u0001\u0000\u0005\u0004\u0001\u0000\u0000\u0000"+
-		"\u0006\t\u0001\u0000\u0000\u0000\u0007\u0005\u0001\u0000\u0000\u0000\u0007"+
-		"\b\u0001\u0000\u0000\u0000\b\n\u0001\u0000\u0000\u0000\t\u0007\u0001\u0000"+
-		"\u0000\u0000\n\u000b\u0005\u0000\u0000\u0001\u000b\f\u0006\u0000\uffff"+
-		"\uffff\u0000\f\u0001\u0001\u0000\u0000\u0000\r\u000e\u0005\u0001\u0000"+
-		"\u0000\u000e\u000f\u0005\u001a\u0000\u0000\u000fH\u0006\u0001\uffff\uffff"+
-		"\u0000\u0010\u0011\u0005\u0001\u0000\u0000\u0011\u0012\u0005\u0019\u0000"+
-		"\u0000\u0012H\u0006\u0001\uffff\uffff\u0000\u0013\u0014\u0005\u0002\u0000"+
-		"\u0000\u0014H\u0006\u0001\uffff\uffff\u0000\u0015\u0016\u0005\u0003\u0000"+
-		"\u0000\u0016H\u0006\u0001\uffff\uffff\u0000\u0017\u0018\u0005\u0004\u0000"+
-		"\u0000\u0018H\u0006\u0001\uffff\uffff\u0000\u0019\u001a\u0005\u0005\u0000"+
-		"\u0000\u001aH\u0006\u0001\uffff\uffff\u0000\u001b\u001c\u0005\u0006\u0000"+
-		"\u0000\u001cH\u0006\u0001\uffff\uffff\u0000\u001d\u001e\u0005\u0007\u0000"+
-		"\u0000\u001eH\u0006\u0001\uffff\uffff\u0000\u001f \u0005\b\u0000\u0000"+
-		" H\u0006\u0001\uffff\uffff\u0000!\"\u0005\u0019\u0000\u0000\"#\u0005\u0018"+
-		"\u0000\u0000#H\u0006\u0001\uffff\uffff\u0000$%\u0005\t\u0000\u0000%&\u0005"+
-		"\u0019\u0000\u0000&H\u0006\u0001\uffff\uffff\u0000\'(\u0005\n\u0000\u0000"+
-		"()\u0005\u0019\u0000\u0000)H\u0006\u0001\uffff\uffff\u0000*+\u0005\u000b"+
-		"\u0000\u0000+,\u0005\u0019\u0000\u0000,H\u0006\u0001\uffff\uffff\u0000"+
-		"-.\u0005\f\u0000\u0000.H\u0006\u0001\uffff\uffff\u0000/0\u0005\r\u0000"+
-		"\u00000H\u0006\u0001\uffff\uffff\u000012\u0005\r\u0000\u00002H\u0006\u0001"+
-		"\uffff\uffff\u000034\u0005\u000e\u0000\u00004H\u0006\u0001\uffff\uffff"+
-		"\u000056\u0005\u000f\u0000\u00006H\u0006\u0001\uffff\uffff\u000078\u0005"+
-		"\u0010\u0000\u00008H\u0006\u0001\uffff\uffff\u00009:\u0005\u0011\u0000"+
-		"\u0000:H\u0006\u0001\uffff\uffff\u0000;<\u0005\u0012\u0000\u0000<H\u0006"+
-		"\u0001\uffff\uffff\u0000=>\u0005\u0013\u0000\u0000>H\u0006\u0001\uffff"+
-		"\uffff\u0000?@\u0005\u0014\u0000\u0000@H\u0006\u0001\uffff\uffff\u0000"+
-		"AB\u0005\u0015\u0000\u0000BH\u0006\u0001\uffff\uffff\u0000CD\u0005\u0016"+
-		"\u0000\u0000DH\u0006\u0001\uffff\uffff\u0000EF\u0005\u0017\u0000\u0000"+
-		"FH\u0006\u0001\uffff\uffff\u0000G\r\u0001\u0000\u0000\u0000G\u0010\u0001"+
-		"\u0000\u0000\u0000G\u0013\u0001\u0000\u0000\u0000G\u0015\u0001\u0000\u0000"+
-		"\u0000G\u0017\u0001\u0000\u0000\u0000G\u0019\u0001\u0000\u0000\u0000G"+
-		"\u001b\u0001\u0000\u0000\u0000G\u001d\u0001\u0000\u0000\u0000G\u001f\u0001"+
-		"\u0000\u0000\u0000G!\u0001\u0000\u0000\u0000G$\u0001\u0000\u0000\u0000"+
-		"G\'\u0001\u0000\u0000\u0000G*\u0001\u0000\u0000\u0000G-\u0001\u0000\u0000"+
-		"\u0000G/\u0001\u0000\u0000\u0000G1\u0001\u0000\u0000\u0000G3\u0001\u0000"+
-		"\u0000\u0000G5\u0001\u0000\u0000\u0000G7\u0001\u0000\u0000\u0000G9\u0001"+
-		"\u0000\u0000\u0000G;\u0001\u0000\u0000\u0000G=\u0001\u0000\u0000\u0000"+
-		"G?\u0001\u0000\u0000\u0000GA\u0001\u0000\u0000\u0000GC\u0001\u0000\u0000"+
-		"\u0000GE\u0001\u0000\u0000\u0000H\u0003\u0001\u0000\u0000\u0000\u0002"+
-		"\u0007G";
+		"\u0001\u0001\u0001\u0001\u0003\u0001J\b\u0001\u0001\u0001\u0000\u0000"+
+		"\u0002\u0000\u0002\u0000\u0000d\u0000\u0007\u0001\u0000\u0000\u0000\u0002"+
+		"I\u0001\u0000\u0000\u0000\u0004\u0006\u0003\u0002\u0001\u0000\u0005\u0004"+
+		"\u0001\u0000\u0000\u0000\u0006\t\u0001\u0000\u0000\u0000\u0007\u0005\u0001"+
+		"\u0000\u0000\u0000\u0007\b\u0001\u0000\u0000\u0000\b\n\u0001\u0000\u0000"+
+		"\u0000\t\u0007\u0001\u0000\u0000\u0000\n\u000b\u0005\u0000\u0000\u0001"+
+		"\u000b\f\u0006\u0000\uffff\uffff\u0000\f\u0001\u0001\u0000\u0000\u0000"+
+		"\r\u000e\u0005\u0001\u0000\u0000\u000e\u000f\u0005\u001b\u0000\u0000\u000f"+
+		"J\u0006\u0001\uffff\uffff\u0000\u0010\u0011\u0005\u0001\u0000\u0000\u0011"+
+		"\u0012\u0005\u001a\u0000\u0000\u0012J\u0006\u0001\uffff\uffff\u0000\u0013"+
+		"\u0014\u0005\u0002\u0000\u0000\u0014J\u0006\u0001\uffff\uffff\u0000\u0015"+
+		"\u0016\u0005\u0003\u0000\u0000\u0016J\u0006\u0001\uffff\uffff\u0000\u0017"+
+		"\u0018\u0005\u0004\u0000\u0000\u0018J\u0006\u0001\uffff\uffff\u0000\u0019"+
+		"\u001a\u0005\u0005\u0000\u0000\u001aJ\u0006\u0001\uffff\uffff\u0000\u001b"+
+		"\u001c\u0005\u0006\u0000\u0000\u001cJ\u0006\u0001\uffff\uffff\u0000\u001d"+
+		"\u001e\u0005\u0007\u0000\u0000\u001eJ\u0006\u0001\uffff\uffff\u0000\u001f"+
+		" \u0005\b\u0000\u0000 J\u0006\u0001\uffff\uffff\u0000!\"\u0005\u001a\u0000"+
+		"\u0000\"#\u0005\u0019\u0000\u0000#J\u0006\u0001\uffff\uffff\u0000$%\u0005"+
+		"\t\u0000\u0000%&\u0005\u001a\u0000\u0000&J\u0006\u0001\uffff\uffff\u0000"+
+		"\'(\u0005\n\u0000\u0000()\u0005\u001a\u0000\u0000)J\u0006\u0001\uffff"+
+		"\uffff\u0000*+\u0005\u000b\u0000\u0000+,\u0005\u001a\u0000\u0000,J\u0006"+
+		"\u0001\uffff\uffff\u0000-.\u0005\f\u0000\u0000.J\u0006\u0001\uffff\uffff"+
+		"\u0000/0\u0005\r\u0000\u00000J\u0006\u0001\uffff\uffff\u000012\u0005\r"+
+		"\u0000\u00002J\u0006\u0001\uffff\uffff\u000034\u0005\u000e\u0000\u0000"+
+		"4J\u0006\u0001\uffff\uffff\u000056\u0005\u000f\u0000\u00006J\u0006\u0001"+
+		"\uffff\uffff\u000078\u0005\u0010\u0000\u00008J\u0006\u0001\uffff\uffff"+
+		"\u00009:\u0005\u0011\u0000\u0000:J\u0006\u0001\uffff\uffff\u0000;<\u0005"+
+		"\u0012\u0000\u0000<J\u0006\u0001\uffff\uffff\u0000=>\u0005\u0013\u0000"+
+		"\u0000>J\u0006\u0001\uffff\uffff\u0000?@\u0005\u0014\u0000\u0000@J\u0006"+
+		"\u0001\uffff\uffff\u0000AB\u0005\u0015\u0000\u0000BJ\u0006\u0001\uffff"+
+		"\uffff\u0000CD\u0005\u0016\u0000\u0000DJ\u0006\u0001\uffff\uffff\u0000"+
+		"EF\u0005\u0017\u0000\u0000FJ\u0006\u0001\uffff\uffff\u0000GH\u0005\u0018"+
+		"\u0000\u0000HJ\u0006\u0001\uffff\uffff\u0000I\r\u0001\u0000\u0000\u0000"+
+		"I\u0010\u0001\u0000\u0000\u0000I\u0013\u0001\u0000\u0000\u0000I\u0015"+
+		"\u0001\u0000\u0000\u0000I\u0017\u0001\u0000\u0000\u0000I\u0019\u0001\u0000"+
+		"\u0000\u0000I\u001b\u0001\u0000\u0000\u0000I\u001d\u0001\u0000\u0000\u0000"+
+		"I\u001f\u0001\u0000\u0000\u0000I!\u0001\u0000\u0000\u0000I$\u0001\u0000"+
+		"\u0000\u0000I\'\u0001\u0000\u0000\u0000I*\u0001\u0000\u0000\u0000I-\u0001"+
+		"\u0000\u0000\u0000I/\u0001\u0000\u0000\u0000I1\u0001\u0000\u0000\u0000"+
+		"I3\u0001\u0000\u0000\u0000I5\u0001\u0000\u0000\u0000I7\u0001\u0000\u0000"+
+		"\u0000I9\u0001\u0000\u0000\u0000I;\u0001\u0000\u0000\u0000I=\u0001\u0000"+
+		"\u0000\u0000I?\u0001\u0000\u0000\u0000IA\u0001\u0000\u0000\u0000IC\u0001"+
+		"\u0000\u0000\u0000IE\u0001\u0000\u0000\u0000IG\u0001\u0000\u0000\u0000"+
+		"J\u0003\u0001\u0000\u0000\u0000\u0002\u0007I";
 	public static final ATN _ATN =
 		new ATNDeserializer().deserialize(_serializedATN.toCharArray());
 	static {
@@ -23,7 +23,8 @@ public class SVMParser extends Parser {
 		PUSH=1, POP=2, ADD=3, SUB=4, MULT=5, DIV=6, STOREW=7, LOADW=8, BRANCH=9, 
 		BRANCHEQ=10, BRANCHLESSEQ=11, JS=12, LOADRA=13, STORERA=14, LOADTM=15, 
 		STORETM=16, LOADFP=17, STOREFP=18, COPYFP=19, LOADHP=20, STOREHP=21, PRINT=22, 
-		HALT=23, COL=24, LABEL=25, INTEGER=26, COMMENT=27, WHITESP=28, ERR=29;
+		HALT=23, NEW=24, COL=25, LABEL=26, INTEGER=27, COMMENT=28, WHITESP=29, 
+		ERR=30;
 	public static final int
 		RULE_assembly = 0, RULE_instruction = 1;
 	private static String[] makeRuleNames() {
@@ -38,7 +39,7 @@ public class SVMParser extends Parser {
 			null, "'push'", "'pop'", "'add'", "'sub'", "'mult'", "'div'", "'sw'", 
 			"'lw'", "'b'", "'beq'", "'bleq'", "'js'", "'lra'", "'sra'", "'ltm'", 
 			"'stm'", "'lfp'", "'sfp'", "'cfp'", "'lhp'", "'shp'", "'print'", "'halt'", 
-			"':'"
+			"'new'", "':'"
 		};
 	}
 	private static final String[] _LITERAL_NAMES = makeLiteralNames();
@@ -47,7 +48,7 @@ public class SVMParser extends Parser {
 			null, "PUSH", "POP", "ADD", "SUB", "MULT", "DIV", "STOREW", "LOADW", 
 			"BRANCH", "BRANCHEQ", "BRANCHLESSEQ", "JS", "LOADRA", "STORERA", "LOADTM", 
 			"STORETM", "LOADFP", "STOREFP", "COPYFP", "LOADHP", "STOREHP", "PRINT", 
-			"HALT", "COL", "LABEL", "INTEGER", "COMMENT", "WHITESP", "ERR"
+			"HALT", "NEW", "COL", "LABEL", "INTEGER", "COMMENT", "WHITESP", "ERR"
 		};
 	}
 	private static final String[] _SYMBOLIC_NAMES = makeSymbolicNames();
@@ -151,7 +152,7 @@ public class SVMParser extends Parser {
 			setState(7);
 			_errHandler.sync(this);
 			_la = _input.LA(1);
-			while ((((_la) & ~0x3f) == 0 && ((1L << _la) & ((1L << PUSH) | (1L << POP) | (1L << ADD) | (1L << SUB) | (1L << MULT) | (1L << DIV) | (1L << STOREW) | (1L << LOADW) | (1L << BRANCH) | (1L << BRANCHEQ) | (1L << BRANCHLESSEQ) | (1L << JS) | (1L << LOADRA) | (1L << STORERA) | (1L << LOADTM) | (1L << STORETM) | (1L << LOADFP) | (1L << STOREFP) | (1L << COPYFP) | (1L << LOADHP) | (1L << STOREHP) | (1L << PRINT) | (1L << HALT) | (1L << LABEL))) != 0)) {
+			while ((((_la) & ~0x3f) == 0 && ((1L << _la) & ((1L << PUSH) | (1L << POP) | (1L << ADD) | (1L << SUB) | (1L << MULT) | (1L << DIV) | (1L << STOREW) | (1L << LOADW) | (1L << BRANCH) | (1L << BRANCHEQ) | (1L << BRANCHLESSEQ) | (1L << JS) | (1L << LOADRA) | (1L << STORERA) | (1L << LOADTM) | (1L << STORETM) | (1L << LOADFP) | (1L << STOREFP) | (1L << COPYFP) | (1L << LOADHP) | (1L << STOREHP) | (1L << PRINT) | (1L << HALT) | (1L << NEW) | (1L << LABEL))) != 0)) {
 				{
 				{
 				setState(4);
@@ -210,6 +211,7 @@ public class SVMParser extends Parser {
 		public TerminalNode STOREHP() { return getToken(SVMParser.STOREHP, 0); }
 		public TerminalNode PRINT() { return getToken(SVMParser.PRINT, 0); }
 		public TerminalNode HALT() { return getToken(SVMParser.HALT, 0); }
+		public TerminalNode NEW() { return getToken(SVMParser.NEW, 0); }
 		public InstructionContext(ParserRuleContext parent, int invokingState) {
 			super(parent, invokingState);
 		}
@@ -233,7 +235,7 @@ public class SVMParser extends Parser {
 		InstructionContext _localctx = new InstructionContext(_ctx, getState());
 		enterRule(_localctx, 2, RULE_instruction);
 		try {
-			setState(69);
+			setState(71);
 			_errHandler.sync(this);
 			switch ( getInterpreter().adaptivePredict(_input,1,_ctx) ) {
 			case 1:
@@ -448,6 +450,14 @@ public class SVMParser extends Parser {
 				 codem((((InstructionContext)_localctx).t!=null?((InstructionContext)_localctx).t.getLine():0), HALT); 
 				}
 				break;
+			case 26:
+				enterOuterAlt(_localctx, 26);
+				{
+				setState(69);
+				((InstructionContext)_localctx).t = match(NEW);
+				 codem((((InstructionContext)_localctx).t!=null?((InstructionContext)_localctx).t.getLine():0), NEW); 
+				}
+				break;
 			}
 		}
 		catch (RecognitionException re) {
@@ -462,7 +472,7 @@ public class SVMParser extends Parser {
 	}
 
 	public static final String _serializedATN =
-		"\u0004\u0001\u001dH\u0002\u0000\u0007\u0000\u0002\u0001\u0007\u0001\u0001"+
+		"\u0004\u0001\u001eJ\u0002\u0000\u0007\u0000\u0002\u0001\u0007\u0001\u0001"+
 		"\u0000\u0005\u0000\u0006\b\u0000\n\u0000\f\u0000\t\t\u0000\u0001\u0000"+
 		"\u0001\u0000\u0001\u0000\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
 		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
@@ -473,48 +483,50 @@ public class SVMParser extends Parser {
 		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
 		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
 		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
-		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0003\u0001F\b\u0001"+
-		"\u0001\u0001\u0000\u0000\u0002\u0000\u0002\u0000\u0000^\u0000\u0007\u0001"+
-		"\u0000\u0000\u0000\u0002E\u0001\u0000\u0000\u0000\u0004\u0006\u0003\u0002"+
-		"\u0001\u0000\u0005\u0004\u0001\u0000\u0000\u0000\u0006\t\u0001\u0000\u0000"+
-		"\u0000\u0007\u0005\u0001\u0000\u0000\u0000\u0007\b\u0001\u0000\u0000\u0000"+
-		"\b\n\u0001\u0000\u0000\u0000\t\u0007\u0001\u0000\u0000\u0000\n\u000b\u0005"+
-		"\u0000\u0000\u0001\u000b\f\u0006\u0000\uffff\uffff\u0000\f\u0001\u0001"+
-		"\u0000\u0000\u0000\r\u000e\u0005\u0001\u0000\u0000\u000e\u000f\u0005\u001a"+
-		"\u0000\u0000\u000fF\u0006\u0001\uffff\uffff\u0000\u0010\u0011\u0005\u0001"+
-		"\u0000\u0000\u0011\u0012\u0005\u0019\u0000\u0000\u0012F\u0006\u0001\uffff"+
-		"\uffff\u0000\u0013\u0014\u0005\u0002\u0000\u0000\u0014F\u0006\u0001\uffff"+
-		"\uffff\u0000\u0015\u0016\u0005\u0003\u0000\u0000\u0016F\u0006\u0001\uffff"+
-		"\uffff\u0000\u0017\u0018\u0005\u0004\u0000\u0000\u0018F\u0006\u0001\uffff"+
-		"\uffff\u0000\u0019\u001a\u0005\u0005\u0000\u0000\u001aF\u0006\u0001\uffff"+
-		"\uffff\u0000\u001b\u001c\u0005\u0006\u0000\u0000\u001cF\u0006\u0001\uffff"+
-		"\uffff\u0000\u001d\u001e\u0005\u0007\u0000\u0000\u001eF\u0006\u0001\uffff"+
-		"\uffff\u0000\u001f \u0005\b\u0000\u0000 F\u0006\u0001\uffff\uffff\u0000"+
-		"!\"\u0005\u0019\u0000\u0000\"#\u0005\u0018\u0000\u0000#F\u0006\u0001\uffff"+
-		"\uffff\u0000$%\u0005\t\u0000\u0000%&\u0005\u0019\u0000\u0000&F\u0006\u0001"+
-		"\uffff\uffff\u0000\'(\u0005\n\u0000\u0000()\u0005\u0019\u0000\u0000)F"+
-		"\u0006\u0001\uffff\uffff\u0000*+\u0005\u000b\u0000\u0000+,\u0005\u0019"+
-		"\u0000\u0000,F\u0006\u0001\uffff\uffff\u0000-.\u0005\f\u0000\u0000.F\u0006"+
-		"\u0001\uffff\uffff\u0000/0\u0005\r\u0000\u00000F\u0006\u0001\uffff\uffff"+
-		"\u000012\u0005\u000e\u0000\u00002F\u0006\u0001\uffff\uffff\u000034\u0005"+
-		"\u000f\u0000\u00004F\u0006\u0001\uffff\uffff\u000056\u0005\u0010\u0000"+
-		"\u00006F\u0006\u0001\uffff\uffff\u000078\u0005\u0011\u0000\u00008F\u0006"+
-		"\u0001\uffff\uffff\u00009:\u0005\u0012\u0000\u0000:F\u0006\u0001\uffff"+
-		"\uffff\u0000;<\u0005\u0013\u0000\u0000<F\u0006\u0001\uffff\uffff\u0000"+
-		"=>\u0005\u0014\u0000\u0000>F\u0006\u0001\uffff\uffff\u0000?@\u0005\u0015"+
-		"\u0000\u0000@F\u0006\u0001\uffff\uffff\u0000AB\u0005\u0016\u0000\u0000"+
-		"BF\u0006\u0001\uffff\uffff\u0000CD\u0005\u0017\u0000\u0000DF\u0006\u0001"+
-		"\uffff\uffff\u0000E\r\u0001\u0000\u0000\u0000E\u0010\u0001\u0000\u0000"+
-		"\u0000E\u0013\u0001\u0000\u0000\u0000E\u0015\u0001\u0000\u0000\u0000E"+
-		"\u0017\u0001\u0000\u0000\u0000E\u0019\u0001\u0000\u0000\u0000E\u001b\u0001"+
-		"\u0000\u0000\u0000E\u001d\u0001\u0000\u0000\u0000E\u001f\u0001\u0000\u0000"+
-		"\u0000E!\u0001\u0000\u0000\u0000E$\u0001\u0000\u0000\u0000E\'\u0001\u0000"+
-		"\u0000\u0000E*\u0001\u0000\u0000\u0000E-\u0001\u0000\u0000\u0000E/\u0001"+
-		"\u0000\u0000\u0000E1\u0001\u0000\u0000\u0000E3\u0001\u0000\u0000\u0000"+
-		"E5\u0001\u0000\u0000\u0000E7\u0001\u0000\u0000\u0000E9\u0001\u0000\u0000"+
-		"\u0000E;\u0001\u0000\u0000\u0000E=\u0001\u0000\u0000\u0000E?\u0001\u0000"+
-		"\u0000\u0000EA\u0001\u0000\u0000\u0000EC\u0001\u0000\u0000\u0000F\u0003"+
-		"\u0001\u0000\u0000\u0000\u0002\u0007E";
+		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
+		"\u0003\u0001H\b\u0001\u0001\u0001\u0000\u0000\u0002\u0000\u0002\u0000"+
+		"\u0000a\u0000\u0007\u0001\u0000\u0000\u0000\u0002G\u0001\u0000\u0000\u0000"+
+		"\u0004\u0006\u0003\u0002\u0001\u0000\u0005\u0004\u0001\u0000\u0000\u0000"+
+		"\u0006\t\u0001\u0000\u0000\u0000\u0007\u0005\u0001\u0000\u0000\u0000\u0007"+
+		"\b\u0001\u0000\u0000\u0000\b\n\u0001\u0000\u0000\u0000\t\u0007\u0001\u0000"+
+		"\u0000\u0000\n\u000b\u0005\u0000\u0000\u0001\u000b\f\u0006\u0000\uffff"+
+		"\uffff\u0000\f\u0001\u0001\u0000\u0000\u0000\r\u000e\u0005\u0001\u0000"+
+		"\u0000\u000e\u000f\u0005\u001b\u0000\u0000\u000fH\u0006\u0001\uffff\uffff"+
+		"\u0000\u0010\u0011\u0005\u0001\u0000\u0000\u0011\u0012\u0005\u001a\u0000"+
+		"\u0000\u0012H\u0006\u0001\uffff\uffff\u0000\u0013\u0014\u0005\u0002\u0000"+
+		"\u0000\u0014H\u0006\u0001\uffff\uffff\u0000\u0015\u0016\u0005\u0003\u0000"+
+		"\u0000\u0016H\u0006\u0001\uffff\uffff\u0000\u0017\u0018\u0005\u0004\u0000"+
+		"\u0000\u0018H\u0006\u0001\uffff\uffff\u0000\u0019\u001a\u0005\u0005\u0000"+
+		"\u0000\u001aH\u0006\u0001\uffff\uffff\u0000\u001b\u001c\u0005\u0006\u0000"+
+		"\u0000\u001cH\u0006\u0001\uffff\uffff\u0000\u001d\u001e\u0005\u0007\u0000"+
+		"\u0000\u001eH\u0006\u0001\uffff\uffff\u0000\u001f \u0005\b\u0000\u0000"+
+		" H\u0006\u0001\uffff\uffff\u0000!\"\u0005\u001a\u0000\u0000\"#\u0005\u0019"+
+		"\u0000\u0000#H\u0006\u0001\uffff\uffff\u0000$%\u0005\t\u0000\u0000%&\u0005"+
+		"\u001a\u0000\u0000&H\u0006\u0001\uffff\uffff\u0000\'(\u0005\n\u0000\u0000"+
+		"()\u0005\u001a\u0000\u0000)H\u0006\u0001\uffff\uffff\u0000*+\u0005\u000b"+
+		"\u0000\u0000+,\u0005\u001a\u0000\u0000,H\u0006\u0001\uffff\uffff\u0000"+
+		"-.\u0005\f\u0000\u0000.H\u0006\u0001\uffff\uffff\u0000/0\u0005\r\u0000"+
+		"\u00000H\u0006\u0001\uffff\uffff\u000012\u0005\u000e\u0000\u00002H\u0006"+
+		"\u0001\uffff\uffff\u000034\u0005\u000f\u0000\u00004H\u0006\u0001\uffff"+
+		"\uffff\u000056\u0005\u0010\u0000\u00006H\u0006\u0001\uffff\uffff\u0000"+
+		"78\u0005\u0011\u0000\u00008H\u0006\u0001\uffff\uffff\u00009:\u0005\u0012"+
+		"\u0000\u0000:H\u0006\u0001\uffff\uffff\u0000;<\u0005\u0013\u0000\u0000"+
+		"<H\u0006\u0001\uffff\uffff\u0000=>\u0005\u0014\u0000\u0000>H\u0006\u0001"+
+		"\uffff\uffff\u0000?@\u0005\u0015\u0000\u0000@H\u0006\u0001\uffff\uffff"+
+		"\u0000AB\u0005\u0016\u0000\u0000BH\u0006\u0001\uffff\uffff\u0000CD\u0005"+
+		"\u0017\u0000\u0000DH\u0006\u0001\uffff\uffff\u0000EF\u0005\u0018\u0000"+
+		"\u0000FH\u0006\u0001\uffff\uffff\u0000G\r\u0001\u0000\u0000\u0000G\u0010"+
+		"\u0001\u0000\u0000\u0000G\u0013\u0001\u0000\u0000\u0000G\u0015\u0001\u0000"+
+		"\u0000\u0000G\u0017\u0001\u0000\u0000\u0000G\u0019\u0001\u0000\u0000\u0000"+
+		"G\u001b\u0001\u0000\u0000\u0000G\u001d\u0001\u0000\u0000\u0000G\u001f"+
+		"\u0001\u0000\u0000\u0000G!\u0001\u0000\u0000\u0000G$\u0001\u0000\u0000"+
+		"\u0000G\'\u0001\u0000\u0000\u0000G*\u0001\u0000\u0000\u0000G-\u0001\u0000"+
+		"\u0000\u0000G/\u0001\u0000\u0000\u0000G1\u0001\u0000\u0000\u0000G3\u0001"+
+		"\u0000\u0000\u0000G5\u0001\u0000\u0000\u0000G7\u0001\u0000\u0000\u0000"+
+		"G9\u0001\u0000\u0000\u0000G;\u0001\u0000\u0000\u0000G=\u0001\u0000\u0000"+
+		"\u0000G?\u0001\u0000\u0000\u0000GA\u0001\u0000\u0000\u0000GC\u0001\u0000"+
+		"\u0000\u0000GE\u0001\u0000\u0000\u0000H\u0003\u0001\u0000\u0000\u0000"+
+		"\u0002\u0007G";
 	public static final ATN _ATN =
 		new ATNDeserializer().deserialize(_serializedATN.toCharArray());
 	static {
@@ -14,6 +14,7 @@ public class AST {
     public static class ProgLetInNode extends Node {
         final List<DecNode> declist;
         final Node exp;
+        int displaySize; // set by the symbol table: entries of the display, in the global frame
 
         ProgLetInNode(List<DecNode> d, Node e) {
             declist = Collections.unmodifiableList(d);
@@ -45,6 +46,8 @@ public class AST {
         final List<ParNode> parlist;
         final List<DecNode> declist;
         final Node exp;
+        STentry entry; // set by the symbol table
+        boolean display; // set by the symbol table: the frame is reached through the display
 
         FunNode(String i, TypeNode rt, List<ParNode> pl, List<DecNode> dl, Node e) {
             id = i;
@@ -81,6 +84,7 @@ public class AST {
     public static class VarNode extends DecNode {
         final String id;
         final Node exp;
+        STentry entry; // set by the symbol table, for constant propagation
 
         VarNode(String i, TypeNode t, Node v) {
             id = i;
@@ -231,7 +235,7 @@ public class AST {
         final List<TypeNode> parlist;
         final TypeNode ret;
 
-        ArrowTypeNode(List<TypeNode> p, TypeNode r) {
+        ArrowTypeNode(List<TypeNode> p, TypeNode r) { // through TypeTable
             parlist = Collections.unmodifiableList(p);
             ret = r;
         }
@@ -243,6 +247,10 @@ public class AST {
     }
 
     public static class BoolTypeNode extends TypeNode {
+        public static final BoolTypeNode INSTANCE = new BoolTypeNode(); // the only one, see TypeTable
+
+        private BoolTypeNode() {
+        }
 
         @Override
         public <S, E extends Exception> S accept(BaseASTVisitor<S, E> visitor) throws E {
@@ -251,6 +259,10 @@ public class AST {
     }
 
     public static class IntTypeNode extends TypeNode {
+        public static final IntTypeNode INSTANCE = new IntTypeNode(); // the only one, see TypeTable
+
+        private IntTypeNode() {
+        }
 
         @Override
         public <S, E extends Exception> S accept(BaseASTVisitor<S, E> visitor) throws E {
@@ -419,6 +431,8 @@ public class AST {
         final Node exp;
         int offset;
         String label;
+        STentry entry; // in the virtual table, shared by the subclasses that inherit the method
+        boolean display; // set by the symbol table: the frame is reached through the display
 
         public MethodNode(String id, TypeNode retType, List<ParNode> parlist, List<DecNode> declist, Node exp) {
             this.id = id;
@@ -449,6 +463,7 @@ public class AST {
         STentry entry; // the object entry (ID1)
         STentry methodEntry; // the method entry (ID2)
         int nl;
+        boolean direct; // set by devirtualization: methodEntry is the only method that can be called
 
         public ClassCallNode(String objectId, String methodId, List<Node> arglist) {
             this.objectId = objectId;
@@ -516,7 +531,7 @@ public class AST {
 
         final ArrowTypeNode fun; // the method with all the information about it
 
-        public MethodTypeNode(ArrowTypeNode fun) {
+        MethodTypeNode(ArrowTypeNode fun) { // through TypeTable
             this.fun = fun;
         }
 
@@ -531,7 +546,7 @@ public class AST {
 
         final String id; // the id of the class
 
-        public RefTypeNode(String id) {
+        RefTypeNode(String id) { // through TypeTable
             this.id = id;
         }
 
@@ -544,6 +559,11 @@ public class AST {
     // Empty Type Node Class
     public static class EmptyTypeNode extends TypeNode {
         // Used to represent the type of an empty node, null type
+        public static final EmptyTypeNode INSTANCE = new EmptyTypeNode(); // the only one, see TypeTable
+
+        private EmptyTypeNode() {
+        }
+
         @Override
         public <S, E extends Exception> S accept(BaseASTVisitor<S, E> visitor) throws E {
             return visitor.visitNode(this);
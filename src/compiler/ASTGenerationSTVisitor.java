@@ -18,11 +18,14 @@ public class ASTGenerationSTVisitor extends FOOLBaseVisitor<Node> {
 
     String indent;
     public boolean print;
+    private final TypeTable types;
 
-    ASTGenerationSTVisitor() {
+    ASTGenerationSTVisitor(TypeTable types) {
+        this.types = types;
     }
 
-    ASTGenerationSTVisitor(boolean debug) {
+    ASTGenerationSTVisitor(TypeTable types, boolean debug) {
+        this.types = types;
         print = debug;
     }
 
@@ -98,13 +101,13 @@ public class ASTGenerationSTVisitor extends FOOLBaseVisitor<Node> {
     @Override
     public Node visitIntType(IntTypeContext c) {
         if (print) printVarAndProdName(c);
-        return new IntTypeNode();
+        return IntTypeNode.INSTANCE;
     }
 
     @Override
     public Node visitBoolType(BoolTypeContext c) {
         if (print) printVarAndProdName(c);
-        return new BoolTypeNode();
+        return BoolTypeNode.INSTANCE;
     }
 
     @Override
@@ -333,8 +336,6 @@ public class ASTGenerationSTVisitor extends FOOLBaseVisitor<Node> {
     @Override
     public Node visitIdType(IdTypeContext ctx) {
         if (print) printVarAndProdName(ctx);
-        var n = new RefTypeNode(ctx.ID().getText());
-        n.setLine(ctx.ID().getSymbol().getLine());
-        return n;
+        return types.ref(ctx.ID().getText());
     }
 }
@@ -3,242 +3,466 @@ package compiler;
 import compiler.AST.*;
 import compiler.exc.VoidException;
 import compiler.lib.BaseASTVisitor;
+import compiler.lib.Code;
+import compiler.lib.DecNode;
 import compiler.lib.Node;
+import compiler.lib.TypeNode;
 import svm.ExecuteVM;
+import svm.RootMap;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-import static compiler.lib.FOOLlib.*;
+import static compiler.lib.Code.*;
+import static compiler.lib.FOOLlib.nlJoin;
 
-public class CodeGenerationASTVisitor extends BaseASTVisitor<String, VoidException> {
+public class CodeGenerationASTVisitor extends BaseASTVisitor<Code, VoidException> {
 
     List<List<String>> dispatchTables = new ArrayList<>();
 
-    CodeGenerationASTVisitor() {
+    // GC points ("new" instructions and return addresses) with the layout of their stack frame,
+    // needed by the garbage collector of the SVM to find the object pointers on the stack
+    Map<String, RootMap> rootMaps = new HashMap<>();
+    private FrameModel frame = new FrameModel(0, 0); // the global frame
+    // labels of the functions and methods, assigned when their declaration list is entered so that
+    // a call in tail position (see tailCall) can branch to a function whose body is being generated
+    // and a direct method call (see ClassCallNode) can jump to a method not generated yet.
+    // Methods are apart: a call to a method by its bare name, from another method, is dispatched
+    // and never a tail call
+    private final Map<STentry, String> funLabels = new HashMap<>(), methodLabels = new HashMap<>();
+    boolean tailCalls = true; // whether calls in tail position reuse the frame
+    boolean jumpingCode = true; // whether conditions are compiled to branches (see jump)
+    private boolean inClass; // declarations at level 1 are the fields and methods of a class
+    private int displaySize; // entries of the display, before the global declarations
+
+    // Model of the stack frame whose code is being generated (see svm.RootMap for the layout)
+    private static class FrameModel {
+        final int clOffset; // offset of the Control Link, 0 for the global frame
+        final int display; // nesting level of the frame if it is in the display, 0 otherwise
+        final List<Integer> pointers = new ArrayList<>(); // offsets of parameters and Access Link holding object pointers
+        final List<Boolean> slots = new ArrayList<>(); // from $fp-2 downwards (declarations, then temporaries):
+                                                       // true if the slot holds an object pointer
+
+        FrameModel(int clOffset, int display) {
+            this.clOffset = clOffset;
+            this.display = display;
+            if (display > 0) slots.add(false); // previous entry of the display
+        }
+
+        void pop(int n) {
+            slots.subList(slots.size() - n, slots.size()).clear();
+        }
+
+        RootMap rootMap() {
+            var offsets = new ArrayList<>(pointers);
+            for (int i = 0; i < slots.size(); i++)
+                if (slots.get(i)) offsets.add(-2 - i);
+            return new RootMap(clOffset, slots.size(), offsets.stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+
+    // whether the value of an expression is an object pointer (or null), according to the enriched AST
+    private static boolean isRef(Node n) {
+        if (n instanceof NewNode || n instanceof EmptyNode) return true;
+        if (n instanceof IdNode id) return id.entry.type instanceof RefTypeNode;
+        if (n instanceof CallNode call) return returnsRef(call.entry.type);
+        if (n instanceof ClassCallNode call) return returnsRef(call.methodEntry.type);
+        if (n instanceof IfNode ifNode) return isRef(ifNode.th) || isRef(ifNode.el);
+        if (n instanceof PrintNode print) return isRef(print.exp);
+        return false;
+    }
+
+    private static boolean returnsRef(TypeNode t) {
+        if (t instanceof MethodTypeNode m) t = m.fun;
+        return t instanceof ArrowTypeNode f && f.ret instanceof RefTypeNode;
+    }
+
+    // declarations leave on the stack the value of a variable, a function address or a dispatch pointer
+    private static boolean isRefDec(DecNode dec) {
+        return dec instanceof VarNode && dec.getType() instanceof RefTypeNode;
+    }
+
+    // code of two operands: the first one is a temporary on the stack while the second one is evaluated
+    private Code visitOperands(Node first, Node second) {
+        Code code = visit(first);
+        frame.slots.add(isRef(first));
+        code = nlJoin(code, visit(second));
+        frame.pop(1);
+        return code;
+    }
+
+    // Address of the frame holding the declarations at nesting level "level", for code at level "from":
+    // the current frame, the one pointed by its Access Link, the global frame (whose frame pointer is 0)
+    // or the one in the display, so that the cost does not depend on how deep functions are nested.
+    // The display is an array at the top of the global frame: the entry at address -1-level points to the frame
+    // of the function (or method) running at that level, if its frame is reached from two or more levels
+    // below (see SymbolTableASTVisitor.nestedTwice); the function sets it on entry and restores it on exit.
+    // In a class, the declarations at level 1 are the fields and methods of the object, the Access Link
+    // of the method frame (level 2).
+    private Code frameAt(int level, int from) {
+        if (inClass && level == 1) return nlJoin(frameAt(2, from), LW);
+        if (from == level) return LFP;
+        if (from == level + 1) return nlJoin(LFP, LW);
+        if (level == 0) return push(0);
+        return nlJoin(push(-1 - level), LW);
+    }
+
+    // code entering and leaving a frame at the given nesting level in the display (no code if it is not)
+    private Code enterDisplay(int level) {
+        if (level == 0) return null;
+        return nlJoin(
+                push(-1 - level), LW, // save the previous entry at $fp-2
+                LFP, push(-1 - level), SW // the entry points to this frame
+        );
     }
 
-    CodeGenerationASTVisitor(boolean debug) {
+    private Code exitDisplay(FrameModel frame) {
+        if (frame.display == 0) return null;
+        return nlJoin(LFP, push(-2), ADD, LW, push(-1 - frame.display), SW); // restore the previous entry
+    }
+
+    private void declareFunctions(List<DecNode> declist) {
+        for (DecNode dec : declist)
+            if (dec instanceof FunNode f) funLabels.put(f.entry, context.freshFunLabel());
+            else if (dec instanceof ClassNode c)
+                for (MethodNode m : c.methodList) methodLabels.put(m.entry, context.freshFunLabel());
+    }
+
+    // code of an expression that is the result of the function whose frame is being generated if tail is true:
+    // then the branches of an if are in tail position too, and so are the calls there
+    private Code visit(Node n, boolean tail) {
+        tail &= tailCalls;
+        if (tail && n instanceof IfNode ifNode) {
+            if (print) printNode(ifNode);
+            return ifCode(ifNode, true);
+        }
+        if (tail && n instanceof CallNode call && funLabels.containsKey(call.entry) && call.entry.nl < call.nl) {
+            if (print) printNode(call, call.id);
+            return tailCall(call);
+        }
+        return visit(n);
+    }
+
+    private final CompilationContext context;
+
+    CodeGenerationASTVisitor(CompilationContext context) {
+        this.context = context;
+    }
+
+    CodeGenerationASTVisitor(CompilationContext context, boolean debug) {
         super(false, debug);
+        this.context = context;
     } //enables print for debugging
 
     @Override
-    public String visitNode(ProgLetInNode n) {
+    public Code visitNode(ProgLetInNode n) {
         if (print) printNode(n);
-        String declCode = null;
-        for (Node dec : n.declist) declCode = nlJoin(declCode, visit(dec));
+        Code declCode = null, displayCode = null;
+        displaySize = n.displaySize;
+        for (int i = 0; i < n.displaySize; i++) {
+            displayCode = nlJoin(displayCode, push(0));
+            frame.slots.add(false);
+        }
+        declareFunctions(n.declist);
+        for (DecNode dec : n.declist) {
+            declCode = nlJoin(declCode, visit(dec));
+            frame.slots.add(isRefDec(dec));
+        }
         return nlJoin(
-                "push 0",
+                push(0),
+                displayCode, // the display, below the return address (see frameAt)
                 declCode, // generate code for declarations (allocation)
                 visit(n.exp),
-                "halt",
-                getCode()
+                HALT,
+                context.getCode()
         );
     }
 
     @Override
-    public String visitNode(ProgNode n) {
+    public Code visitNode(ProgNode n) {
         if (print) printNode(n);
         return nlJoin(
                 visit(n.exp),
-                "halt"
+                HALT
         );
     }
 
     @Override
-    public String visitNode(FunNode n) {
+    public Code visitNode(FunNode n) {
         if (print) printNode(n, n.id);
-        String declCode = null, popDecl = null, popParl = null;
-        for (Node dec : n.declist) {
+        FrameModel outerFrame = frame;
+        frame = new FrameModel(n.parlist.size() + 1, n.display ? n.entry.nl + 1 : 0);
+        for (int i = 0; i < n.parlist.size(); i++)
+            if (n.parlist.get(i).getType() instanceof RefTypeNode) frame.pointers.add(i + 1);
+        Code declCode = enterDisplay(frame.display), popDecl = n.display ? POP : null, popParl = null;
+        declareFunctions(n.declist);
+        for (DecNode dec : n.declist) {
             declCode = nlJoin(declCode, visit(dec));
-            popDecl = nlJoin(popDecl, "pop");
+            frame.slots.add(isRefDec(dec));
+            popDecl = nlJoin(popDecl, POP);
         }
-        for (int i = 0; i < n.parlist.size(); i++) popParl = nlJoin(popParl, "pop");
-        String funl = freshFunLabel();
-        putCode(
+        for (int i = 0; i < n.parlist.size(); i++) popParl = nlJoin(popParl, POP);
+        Code bodyCode = nlJoin(visit(n.exp, true), exitDisplay(frame));
+        frame = outerFrame;
+        String funl = funLabels.get(n.entry);
+        context.putCode(
                 nlJoin(
-                        funl + ":",
-                        "cfp", // set $fp to $sp value
-                        "lra", // load $ra value
+                        label(funl),
+                        CFP, // set $fp to $sp value
+                        LRA, // load $ra value
                         declCode, // generate code for local declarations (they use the new $fp!!!)
-                        visit(n.exp), // generate code for function body expression
-                        "stm", // set $tm to popped value (function result)
+                        bodyCode, // generate code for function body expression
+                        STM, // set $tm to popped value (function result)
                         popDecl, // remove local declarations from stack
-                        "sra", // set $ra to popped value
-                        "pop", // remove Access Link from stack
+                        SRA, // set $ra to popped value
+                        POP, // remove Access Link from stack
                         popParl, // remove parameters from stack
-                        "sfp", // set $fp to popped value (Control Link)
-                        "ltm", // load $tm value (function result)
-                        "lra", // load $ra value
-                        "js"  // jump to to popped address
+                        SFP, // set $fp to popped value (Control Link)
+                        LTM, // load $tm value (function result)
+                        LRA, // load $ra value
+                        JS  // jump to to popped address
                 )
         );
-        return "push " + funl;
+        return push(funl);
     }
 
     @Override
-    public String visitNode(VarNode n) {
+    public Code visitNode(VarNode n) {
         if (print) printNode(n, n.id);
         return visit(n.exp);
     }
 
     @Override
-    public String visitNode(PrintNode n) {
+    public Code visitNode(PrintNode n) {
         if (print) printNode(n);
         return nlJoin(
                 visit(n.exp),
-                "print"
+                PRINT
         );
     }
 
     @Override
-    public String visitNode(IfNode n) {
+    public Code visitNode(IfNode n) {
         if (print) printNode(n);
-        String l1 = freshLabel();
-        String l2 = freshLabel();
+        return ifCode(n, false);
+    }
+
+    private Code ifCode(IfNode n, boolean tail) {
+        String l1 = context.freshLabel();
+        String l2 = context.freshLabel();
+        return nlJoin(
+                jump(n.cond, true, l1),
+                visit(n.el, tail),
+                b(l2),
+                label(l1),
+                visit(n.th, tail),
+                label(l2)
+        );
+    }
+
+    // Jumping code of a condition: branches to target if the condition evaluates to "when",
+    // falls through otherwise. Comparisons branch on their operands, Not swaps the outcome,
+    // And and Or short-circuit with no boolean value in between; any other expression
+    // (and every condition if jumpingCode is off) is evaluated to 0/1 and tested.
+    private Code jump(Node n, boolean when, String target) {
+        if (jumpingCode) {
+            if (n instanceof BoolNode b) return b.val == when ? b(target) : null;
+            if (n instanceof NotNode not) return jump(not.exp, !when, target);
+            if (n instanceof EqualNode e) return compare(e.left, e.right, when, true, target);
+            if (n instanceof LessEqualNode e) return compare(e.left, e.right, when, false, target);
+            if (n instanceof GreaterEqualNode e) return compare(e.right, e.left, when, false, target); // y <= x
+            if (n instanceof AndNode e) {
+                if (!when) return nlJoin(jump(e.left, false, target), jump(e.right, false, target));
+                String skip = context.freshLabel();
+                return nlJoin(jump(e.left, false, skip), jump(e.right, true, target), label(skip));
+            }
+            if (n instanceof OrNode e) {
+                if (when) return nlJoin(jump(e.left, true, target), jump(e.right, true, target));
+                String skip = context.freshLabel();
+                return nlJoin(jump(e.left, true, skip), jump(e.right, false, target), label(skip));
+            }
+        }
+        return nlJoin(
+                visit(n),
+                push(when ? 1 : 0),
+                beq(target)
+        );
+    }
+
+    // "left == right" (equal) or "left <= right" (not equal): the SVM has no negated branches,
+    // so a branch on false skips an unconditional one
+    private Code compare(Node left, Node right, boolean when, boolean equal, String target) {
+        if (when) return nlJoin(visitOperands(left, right), equal ? beq(target) : bleq(target));
+        String skip = context.freshLabel();
         return nlJoin(
-                visit(n.cond),
-                "push 1",
-                "beq " + l1,
-                visit(n.el),
-                "b " + l2,
-                l1 + ":",
-                visit(n.th),
-                l2 + ":"
+                visitOperands(left, right),
+                equal ? beq(skip) : bleq(skip),
+                b(target),
+                label(skip)
         );
     }
 
     @Override
-    public String visitNode(EqualNode n) {
+    public Code visitNode(EqualNode n) {
         if (print) printNode(n);
-        String l1 = freshLabel();
-        String l2 = freshLabel();
+        String l1 = context.freshLabel();
+        String l2 = context.freshLabel();
         return nlJoin(
-                visit(n.left),
-                visit(n.right),
-                "beq " + l1,
-                "push 0",
-                "b " + l2,
-                l1 + ":",
-                "push 1",
-                l2 + ":"
+                visitOperands(n.left, n.right),
+                beq(l1),
+                push(0),
+                b(l2),
+                label(l1),
+                push(1),
+                label(l2)
         );
     }
 
     @Override
-    public String visitNode(TimesNode n) {
+    public Code visitNode(TimesNode n) {
         if (print) printNode(n);
         return nlJoin(
-                visit(n.left),
-                visit(n.right),
-                "mult"
+                visitOperands(n.left, n.right),
+                MULT
         );
     }
 
     @Override
-    public String visitNode(PlusNode n) {
+    public Code visitNode(PlusNode n) {
         if (print) printNode(n);
         return nlJoin(
-                visit(n.left),
-                visit(n.right),
-                "add"
+                visitOperands(n.left, n.right),
+                ADD
         );
     }
 
     @Override
-    public String visitNode(CallNode n) {
+    public Code visitNode(CallNode n) {
         if (print) printNode(n, n.id);
-        String argCode = null, getAR = null;
-        for (int i = n.arglist.size() - 1; i >= 0; i--) argCode = nlJoin(argCode, visit(n.arglist.get(i)));
-        for (int i = 0; i < n.nl - n.entry.nl; i++) getAR = nlJoin(getAR, "lw");
+        Code argCode = null;
+        RootMap returnMap = frame.rootMap(); // Control Link, arguments and Access Link belong to the callee frame
+        frame.slots.add(false); // Control Link
+        for (int i = n.arglist.size() - 1; i >= 0; i--) {
+            argCode = nlJoin(argCode, visit(n.arglist.get(i)));
+            frame.slots.add(isRef(n.arglist.get(i)));
+        }
+        frame.pop(n.arglist.size() + 1);
+        String returnLabel = context.freshLabel(); // return address, a GC point
+        rootMaps.put(returnLabel, returnMap);
         var code = nlJoin(
-                "lfp", // load Control Link (pointer to frame of function "id" caller)
+                LFP, // load Control Link (pointer to frame of function "id" caller)
                 argCode, // generate code for argument expressions in reversed order
-                "lfp", getAR, // retrieve address of frame containing "id" declaration
-                // by following the static chain (of Access Links)
-                "stm", // set $tm to popped value (with the aim of duplicating top of stack)
-                "ltm", // load Access Link (pointer to frame of function "id" declaration)
-                "ltm" // duplicate top of stack
+                frameAt(n.entry.nl, n.nl), // retrieve address of frame containing "id" declaration
+                STM, // set $tm to popped value (with the aim of duplicating top of stack)
+                LTM, // load Access Link (pointer to frame of function "id" declaration)
+                LTM // duplicate top of stack
         );
 
         if (n.entry.type instanceof MethodTypeNode)
             return nlJoin(
                     code,
-                    "lw", // load the address of the class's method // new one command for method
-                    "push " + n.entry.offset, "add", // compute address of "id" declaration
-                    "lw", // load address of "id" function
-                    "js"  // jump to popped address (saving address of subsequent instruction in $ra)
+                    LW, // load the address of the class's method // new one command for method
+                    push(n.entry.offset), ADD, // compute address of "id" declaration
+                    LW, // load address of "id" function
+                    JS,  // jump to popped address (saving address of subsequent instruction in $ra)
+                    label(returnLabel)
             );
         else // no changes for functions
             return nlJoin(
                     code,
-                    "push " + n.entry.offset, "add", // compute address of "id" declaration
-                    "lw", // load address of "id" function
-                    "js"  // jump to popped address (saving address of subsequent instruction in $ra)
+                    push(n.entry.offset), ADD, // compute address of "id" declaration
+                    LW, // load address of "id" function
+                    JS,  // jump to popped address (saving address of subsequent instruction in $ra)
+                    label(returnLabel)
             );
     }
 
+    // Call in tail position to a function declared outside the current one (so that its Access Link
+    // does not point to the frame being reused) whose code is known: instead of a new frame,
+    // the frame of the current function is replaced by the one of the called function, which then returns
+    // directly to our caller, and a list processed by tail recursion takes constant stack.
+    // Arguments and Access Link are computed as for a call, then moved over the parameters and Access Link
+    // of the current frame (the Control Link stays), starting from the highest address as they move upwards;
+    // the rest of the frame is popped, $ra gets back our return address and a branch enters the function.
+    private Code tailCall(CallNode n) {
+        int params = frame.clOffset - 1, base = -2 - frame.slots.size(); // offset of the first word pushed
+        Code argCode = null, moveCode = null, popFrame = null;
+        for (int i = n.arglist.size() - 1; i >= 0; i--) {
+            argCode = nlJoin(argCode, visit(n.arglist.get(i)));
+            frame.slots.add(isRef(n.arglist.get(i)));
+        }
+        frame.pop(n.arglist.size());
+        for (int k = 0; k <= n.arglist.size(); k++)
+            moveCode = nlJoin(moveCode, LFP, push(base - k), ADD, LW, LFP, push(params - k), ADD, SW);
+        for (int i = 0; i < params + 2 + frame.slots.size(); i++) popFrame = nlJoin(popFrame, POP);
+        return nlJoin(
+                argCode, // generate code for argument expressions in reversed order
+                frameAt(n.entry.nl, n.nl), // retrieve address of frame containing "id" declaration
+                exitDisplay(frame),
+                LFP, push(-1), ADD, LW, SRA, // set $ra to our return address
+                moveCode, // move arguments and Access Link in place
+                popFrame, // pop the rest of the frame: the Access Link is on top
+                b(funLabels.get(n.entry)) // enter function "id"
+        );
+    }
+
     @Override
-    public String visitNode(IdNode n) {
+    public Code visitNode(IdNode n) {
         if (print) printNode(n, n.id);
-        String getAR = null;
-        for (int i = 0; i < n.nl - n.entry.nl; i++) getAR = nlJoin(getAR, "lw");
         return nlJoin(
-                "lfp", getAR, // retrieve address of frame containing "id" declaration
-                // by following the static chain (of Access Links)
-                "push " + n.entry.offset, "add", // compute address of "id" declaration
-                "lw" // load value of "id" variable
+                frameAt(n.entry.nl, n.nl), // retrieve address of frame containing "id" declaration
+                push(n.entry.offset), ADD, // compute address of "id" declaration
+                LW // load value of "id" variable
         );
     }
 
     @Override
-    public String visitNode(BoolNode n) {
+    public Code visitNode(BoolNode n) {
         if (print) printNode(n, n.val.toString());
-        return "push " + (n.val ? 1 : 0);
+        return push(n.val ? 1 : 0);
     }
 
     @Override
-    public String visitNode(IntNode n) {
+    public Code visitNode(IntNode n) {
         if (print) printNode(n, n.val.toString());
-        return "push " + n.val;
+        return push(n.val);
     }
 
     // OPERATOR EXTENSION
     @Override
-    public String visitNode(MinusNode n) throws VoidException {
+    public Code visitNode(MinusNode n) throws VoidException {
         if (print) printNode(n);
         return nlJoin(
-                visit(n.left),
-                visit(n.right),
-                "sub"
+                visitOperands(n.left, n.right),
+                SUB
         );
     }
 
     @Override
-    public String visitNode(DivNode n) throws VoidException {
+    public Code visitNode(DivNode n) throws VoidException {
         if (print) printNode(n);
         return nlJoin(
-                visit(n.left),
-                visit(n.right),
-                "div"
+                visitOperands(n.left, n.right),
+                DIV
         );
     }
 
     // x >= y
     @Override
-    public String visitNode(GreaterEqualNode n) throws VoidException {
+    public Code visitNode(GreaterEqualNode n) throws VoidException {
         if (print) printNode(n);
-        String l1 = freshLabel();
-        String l2 = freshLabel();
+        String l1 = context.freshLabel();
+        String l2 = context.freshLabel();
         return nlJoin(
-                visit(n.right),
-                visit(n.left),
-                "bleq " + l1,
-                "push 0",
-                "b " + l2,
-                l1 + ":",
-                "push 1",
-                l2 + ":"
+                visitOperands(n.right, n.left),
+                bleq(l1),
+                push(0),
+                b(l2),
+                label(l1),
+                push(1),
+                label(l2)
         ); // non avendo bge, inverto i due operandi e utilizzo la ble
         // x >= y equivale a y <= x
         // confronto l'operando di destra con quello di sinistra
@@ -247,59 +471,58 @@ public class CodeGenerationASTVisitor extends BaseASTVisitor<String, VoidExcepti
     }
 
     @Override
-    public String visitNode(LessEqualNode n) throws VoidException {
+    public Code visitNode(LessEqualNode n) throws VoidException {
         if (print) printNode(n);
-        String l1 = freshLabel();
-        String l2 = freshLabel();
+        String l1 = context.freshLabel();
+        String l2 = context.freshLabel();
         return nlJoin(
-                visit(n.left),
-                visit(n.right),
-                "bleq " + l1,
-                "push 0",
-                "b " + l2,
-                l1 + ":",
-                "push 1",
-                l2 + ":"
+                visitOperands(n.left, n.right),
+                bleq(l1),
+                push(0),
+                b(l2),
+                label(l1),
+                push(1),
+                label(l2)
         ); // confronto l'operando di sinistra con quello di destra
         // se l'operando di sinistra è minore o uguale allora salto a l1
         // e faccio push 1, altrimenti faccio push 0 e salto a l2
     }
 
     @Override
-    public String visitNode(NotNode n) throws VoidException {
+    public Code visitNode(NotNode n) throws VoidException {
         if (print) printNode(n);
-        String l1 = freshLabel();
-        String l2 = freshLabel();
+        String l1 = context.freshLabel();
+        String l2 = context.freshLabel();
         return nlJoin(
                 visit(n.exp),
-                "push 1",
-                "beq " + l1,
-                "push 1",
-                "b " + l2,
-                l1 + ":",
-                "push 0",
-                l2 + ":"
+                push(1),
+                beq(l1),
+                push(1),
+                b(l2),
+                label(l1),
+                push(0),
+                label(l2)
         ); // se l'exp è 0 push 1, altrimenti push 0
         // inverto il valore in quanto il not è 1 se l'exp è 0 e 0 se l'exp è 1
     }
 
     @Override
-    public String visitNode(OrNode n) throws VoidException {
+    public Code visitNode(OrNode n) throws VoidException {
         if (print) printNode(n);
-        String l1 = freshLabel();
-        String l2 = freshLabel();
+        String l1 = context.freshLabel();
+        String l2 = context.freshLabel();
         return nlJoin(
                 visit(n.left),
-                "push 1",
-                "beq " + l1,
+                push(1),
+                beq(l1),
                 visit(n.right),
-                "push 1",
-                "beq " + l1,
-                "push 0",
-                "b " + l2,
-                l1 + ":",
-                "push 1",
-                l2 + ":"
+                push(1),
+                beq(l1),
+                push(0),
+                b(l2),
+                label(l1),
+                push(1),
+                label(l2)
         ); // se l'operando di sinistra è 1 vado a l1 e pusho 1, infatti nell'or basta un true per essere true l'exp
         // altrimenti proseguo analizzando l'operando di destra
         // se l'operando di destra è 1 vado a l1 e pusho 1, altrimenti vuol dire che entrambi left e right
@@ -307,38 +530,39 @@ public class CodeGenerationASTVisitor extends BaseASTVisitor<String, VoidExcepti
     }
 
     @Override
-    public String visitNode(AndNode n) throws VoidException {
+    public Code visitNode(AndNode n) throws VoidException {
         if (print) printNode(n);
-        String l1 = freshLabel();
-        String l2 = freshLabel();
+        String l1 = context.freshLabel();
+        String l2 = context.freshLabel();
         return nlJoin(
                 visit(n.left),
-                "push 0",
-                "beq " + l1,
+                push(0),
+                beq(l1),
                 visit(n.right),
-                "push 0",
-                "beq " + l1,
-                "push 1",
-                "b " + l2,
-                l1 + ":",
-                "push 0",
-                l2 + ":"
+                push(0),
+                beq(l1),
+                push(1),
+                b(l2),
+                label(l1),
+                push(0),
+                label(l2)
         ); // se l'operando di sinistra è 0 vado a l1 e pusho 0, infatti nell'and basta un false per essere false l'exp
         // altrimenti proseguo analizzando l'operando di destra, se l'operando di destra è 0 vado a l1 e pusho 0
         // altrimenti vuol dire che entrambi left e right sono true quindi pusho 1 e vado a l2
     }
 
     @Override
-    public String visitNode(ClassNode n) throws VoidException {
+    public Code visitNode(ClassNode n) throws VoidException {
         if (print) printNode(n);
 
         var dispatchTable = new ArrayList<String>(); // No superclass -> empty dispatch table
 
         // inherits -> copy superclass' dispatch table, offset ref to slide 40
         if (n.superId != null)
-            dispatchTable.addAll(dispatchTables.get(-n.superEntry.offset - 2)); // copy value and not its reference!!
+            dispatchTable.addAll(dispatchTables.get(-n.superEntry.offset - 2 - displaySize)); // copy value and not its reference!!
 
         // visit methods
+        inClass = true;
         for (var m : n.methodList) {
             visit(m);
             var label = m.label;
@@ -350,55 +574,80 @@ public class CodeGenerationASTVisitor extends BaseASTVisitor<String, VoidExcepti
                 dispatchTable.add(offset, label); // not overriding
         }
 
+        inClass = false;
         dispatchTables.add(dispatchTable); // add dispatch table to the others
-        String dispatchTableCode = null;
+
+        // class descriptor for the garbage collector, right below the dispatch table:
+        // one word per field (1 if it holds an object pointer) and then the number of fields,
+        // so that field i is described at dispatch pointer-2-i and the number of fields is at dispatch pointer-1
+        var fields = n.type.allFields;
+        Code descriptorCode = null;
+        for (int i = fields.size() - 1; i >= 0; i--)
+            descriptorCode = nlJoin(
+                    descriptorCode,
+                    push(fields.get(i) instanceof RefTypeNode ? 1 : 0),
+                    LHP, SW, incrementHeapPointer()
+            );
+        descriptorCode = nlJoin(descriptorCode, push(fields.size()), LHP, SW, incrementHeapPointer());
+
+        Code dispatchTableCode = null;
         for (var label : dispatchTable) {
             dispatchTableCode = nlJoin(
                     dispatchTableCode,
-                    "push " + label, // push on stack the method label (the address)
-                    "lhp", // load $hp on stack
-                    "sw", // pop the two values and store the method label at the address pointed by $hp
+                    push(label), // push on stack the method label (the address)
+                    LHP, // load $hp on stack
+                    SW, // pop the two values and store the method label at the address pointed by $hp
                     incrementHeapPointer() // increment $hp
             );
         }
 
         return nlJoin(
-                "lhp", // load $hp on stack, the address of the dispatch pointer to return
+                descriptorCode, // store the class descriptor on the heap
+                LHP, // load $hp on stack, the address of the dispatch pointer to return
                 dispatchTableCode // load the dispatch table on the heap
         );
     }
 
     @Override
-    public String visitNode(MethodNode n) throws VoidException {
+    public Code visitNode(MethodNode n) throws VoidException {
         if (print) printNode(n);
-        String declCode = null, popDecl = null, popParl = null;
+        FrameModel outerFrame = frame;
+        frame = new FrameModel(n.parlist.size() + 1, n.display ? 2 : 0); // method bodies are at level 2
+        frame.pointers.add(0); // the Access Link is the object pointer
+        for (int i = 0; i < n.parlist.size(); i++)
+            if (n.parlist.get(i).getType() instanceof RefTypeNode) frame.pointers.add(i + 1);
+        Code declCode = enterDisplay(frame.display), popDecl = n.display ? POP : null, popParl = null;
+        declareFunctions(n.declist);
 
         for (var dec : n.declist) {
             // create declarations code
             declCode = nlJoin(declCode, visit(dec));
+            frame.slots.add(isRefDec(dec));
             // for every declaration, add a pop to pop the value from the stack
-            popDecl = nlJoin(popDecl, "pop");
+            popDecl = nlJoin(popDecl, POP);
         }
-        for (var p : n.parlist) popParl = nlJoin(popParl, "pop");
-        n.label = freshFunLabel();  // generate label and set label to method node
+        for (var p : n.parlist) popParl = nlJoin(popParl, POP);
+        Code bodyCode = nlJoin(visit(n.exp, true), exitDisplay(frame));
+        frame = outerFrame;
+        n.label = methodLabels.get(n.entry);  // set label to method node
 
         // same as functions
-        putCode(
+        context.putCode(
                 nlJoin(
-                        n.label + ":",
-                        "cfp", // set $fp to $sp value
-                        "lra", // load $ra value
+                        label(n.label),
+                        CFP, // set $fp to $sp value
+                        LRA, // load $ra value
                         declCode, // generate code for local declarations (they use the new $fp!!!)
-                        visit(n.exp), // generate code for function body expression
-                        "stm", // set $tm to popped value (function result)
+                        bodyCode, // generate code for function body expression
+                        STM, // set $tm to popped value (function result)
                         popDecl, // remove local declarations from stack
-                        "sra", // set $ra to popped value
-                        "pop", // remove Access Link from stack
+                        SRA, // set $ra to popped value
+                        POP, // remove Access Link from stack
                         popParl, // remove parameters from stack
-                        "sfp", // set $fp to popped value (Control Link)
-                        "ltm", // load $tm value (function result)
-                        "lra", // load $ra value
-                        "js"  // jump to to popped address
+                        SFP, // set $fp to popped value (Control Link)
+                        LTM, // load $tm value (function result)
+                        LRA, // load $ra value
+                        JS  // jump to to popped address
                 )
         );
 
@@ -406,78 +655,93 @@ public class CodeGenerationASTVisitor extends BaseASTVisitor<String, VoidExcepti
     }
 
     @Override
-    public String visitNode(ClassCallNode node) throws VoidException {
+    public Code visitNode(ClassCallNode node) throws VoidException {
         if (print) printNode(node, node.objectId + "." + node.methodId);
 
         // same as CallNode
-        String argCode = null, getAR = null;
-        for (int i = node.arglist.size() - 1; i >= 0; i--)
+        Code argCode = null;
+        RootMap returnMap = frame.rootMap(); // Control Link, arguments and Access Link belong to the callee frame
+        frame.slots.add(false); // Control Link
+        for (int i = node.arglist.size() - 1; i >= 0; i--) {
             argCode = nlJoin(argCode, visit(node.arglist.get(i)));
-        for (int i = 0; i < node.nl - node.entry.nl; i++)
-            getAR = nlJoin(getAR, "lw");
+            frame.slots.add(isRef(node.arglist.get(i)));
+        }
+        frame.pop(node.arglist.size() + 1);
+        String returnLabel = context.freshLabel(); // return address, a GC point
+        rootMaps.put(returnLabel, returnMap);
+        if (node.direct) // no dispatch: the object is the Access Link of the only method that can be called
+            return nlJoin(
+                    LFP, // load Control Link (pointer to frame of function "id" caller)
+                    argCode, // generate code for argument expressions in reversed order
+                    frameAt(node.entry.nl, node.nl), // retrieve address of frame containing "id" declaration
+                    push(node.entry.offset), ADD, // push offset of id1 declaration on stack and compute its address
+                    LW, // load Access Link (the object pointer)
+                    STM, LTM, LTM, LW, POP, // load its dispatch pointer and drop it: the SVM traps on null
+                    push(methodLabels.get(node.methodEntry)), // push the label of the method
+                    JS, // jump to popped address (saving address of subsequent instruction in $ra)
+                    label(returnLabel)
+            );
         return nlJoin(
-                "lfp", // load Control Link (pointer to frame of function "id" caller)
+                LFP, // load Control Link (pointer to frame of function "id" caller)
                 argCode, // generate code for argument expressions in reversed order
-                "lfp", getAR, // retrieve address of frame containing "id" declaration
-                // by following the static chain (of Access Links)
+                frameAt(node.entry.nl, node.nl), // retrieve address of frame containing "id" declaration
                 // above is the same as call node, below is different
                 // ID1
-                "push " + node.entry.offset, "add", // push offset of id1 declaration on stack and compute its address
-                "lw", // load address of id1 declaration
-                "stm", // set $tm to popped value (with the aim of duplicating top of stack)
-                "ltm", // load Access Link (pointer to frame of function "id" declaration)
-                "ltm", // duplicate top of stack
+                push(node.entry.offset), ADD, // push offset of id1 declaration on stack and compute its address
+                LW, // load address of id1 declaration
+                STM, // set $tm to popped value (with the aim of duplicating top of stack)
+                LTM, // load Access Link (pointer to frame of function "id" declaration)
+                LTM, // duplicate top of stack
                 // ID2
-                "lw", // load the address of the class's method // new one command for method
-                "push " + node.methodEntry.offset, "add", // push offset of id2 declaration on stack and compute its address
-                "lw", // load address of "id" function
-                "js"  // jump to popped address (saving address of subsequent instruction in $ra)
+                LW, // load the address of the class's method // new one command for method
+                push(node.methodEntry.offset), ADD, // push offset of id2 declaration on stack and compute its address
+                LW, // load address of "id" function
+                JS,  // jump to popped address (saving address of subsequent instruction in $ra)
+                label(returnLabel)
         );
     }
 
     @Override
-    public String visitNode(NewNode n) throws VoidException {
+    public Code visitNode(NewNode n) throws VoidException {
         if (print) printNode(n);
 
         // recall over all arguments to put them (for each arg) on the stack. Ref to slide 45
-        String args = null;
-        for (var arg : n.arglist) args = nlJoin(args, visit(arg));
-
-        // move each value from the stack to the heap. Ref to slide 45
-        for (var arg : n.arglist)
-            args = nlJoin(
-                    args,
-                    "lhp", // load $hp value
-                    "sw", // pop two values: the second one is written at the memory address pointed by hp
-                    incrementHeapPointer() // increment $hp by 1
-            );
+        Code args = null;
+        for (var arg : n.arglist) {
+            args = nlJoin(args, visit(arg));
+            frame.slots.add(isRef(arg));
+        }
+        frame.pop(n.arglist.size()); // the "new" instruction takes care of them
+
+        // address of the class' dispatch pointer in the global frame,
+        // whose frame pointer is 0 (the stack base) whatever the memory size of the SVM
+        var address = n.entry.offset;
 
-        var address = ExecuteVM.MEMSIZE + n.entry.offset; // get the address of the class in the heap
+        String gcPoint = context.freshLabel(); // allocation may trigger a garbage collection
+        rootMaps.put(gcPoint, frame.rootMap());
 
         return nlJoin(
                 args,
-                "push " + address, // push the address of the class in the heap to the stack
-                "lw", // put on the stack the value of $address (the class) from memory
-                "lhp", // load $hp value (the dispatch pointer address)
-                "sw", // store in $hp the dispatch pointer
-                "lhp", // load on stack the $hp value (the dispatch pointer address)
-                incrementHeapPointer() // increment $hp by 1
+                push(address), // push the address of the class in the heap to the stack
+                LW, // put on the stack the value of $address (the class) from memory
+                label(gcPoint),
+                NEW // move the arguments to the heap followed by the dispatch pointer, push the object address
         );
     }
 
     @Override
-    public String visitNode(EmptyNode n) throws VoidException {
+    public Code visitNode(EmptyNode n) throws VoidException {
         if (print) printNode(n);
-        return "push -1"; // put on stack -1, none object pointer has this value. Ref to slide 42
+        return push(ExecuteVM.NULL); // put on stack -1, none object pointer has this value. Ref to slide 42
     }
 
     // Extracted method to increment heap pointer by one
     // It's always the same code, so it's better to extract it
-    private String incrementHeapPointer() {
+    private Code incrementHeapPointer() {
         return nlJoin(
-                "lhp", "push 1", // load $hp value and push a 1 on the stack
-                "add", // sum $hp and 1
-                "shp" // set $hp to popped value (the result of the sum)
+                LHP, push(1), // load $hp value and push a 1 on the stack
+                ADD, // sum $hp and 1
+                SHP // set $hp to popped value (the result of the sum)
         );
     }
 
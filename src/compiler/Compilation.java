@@ -0,0 +1,163 @@
+package compiler;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.*;
+import compiler.lib.*;
+import compiler.exc.*;
+import svm.*;
+
+// One compilation of a FOOL program, from source text to assembled code (see Test for the phases).
+// All its state is in its own CompilationContext: any number of compilations can run at the same time
+// on different threads. The phases report to log; errors found in the program are always printed
+// on System.out by the visitors.
+public class Compilation {
+
+	// assembled code of a program, with the root maps of the garbage collector by code address
+	public record Result(Code code, Assembler asm, Map<Integer, RootMap> rootMaps) {}
+
+	int optLevel = 1; // optimizations are enabled at levels above 0
+	int inlineBudget = 12; // functions are inlined if their body grows the code by at most budget AST nodes
+	boolean printAST = false; // whether the enriched AST is printed (on System.out)
+	IncrementalCache cache = null; // of the declarations type checked before, for an incremental compilation
+	private final PrintStream log;
+	private final CompilationContext context = new CompilationContext();
+	private int frontEndErrors;
+
+	public Compilation(PrintStream log) {
+		this.log = log;
+	}
+
+	public Compilation() { // silent
+		this(new PrintStream(OutputStream.nullOutputStream()));
+	}
+
+	public int frontEndErrors() {
+		return frontEndErrors;
+	}
+
+	// two-stage parsing: first with SLL prediction, much faster on the left-recursive exp rule, stopping at
+	// the first syntax error; SLL may fail on a valid program (never succeeds with a wrong tree), so if it
+	// fails the program is parsed again from the start with full LL prediction and the usual error reporting
+	static ParseTree parse(FOOLParser parser) {
+		parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+		parser.removeErrorListeners();
+		parser.setErrorHandler(new BailErrorStrategy());
+		try {
+			return parser.prog();
+		} catch (ParseCancellationException e) {
+			parser.reset(); // rewinds the tokens and clears the syntax errors
+			parser.addErrorListener(ConsoleErrorListener.INSTANCE);
+			parser.setErrorHandler(new DefaultErrorStrategy());
+			parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+			return parser.prog();
+		}
+	}
+
+	// the code of the program, null if there are front-end errors
+	public Result compile(CharStream chars) {
+		FOOLLexer lexer = new FOOLLexer(chars);
+		CommonTokenStream tokens = new CommonTokenStream(lexer);
+		FOOLParser parser = new FOOLParser(tokens);
+
+		log.println("Generating ST via lexer and parser.");
+		ParseTree st = parse(parser);
+		log.println("You had "+lexer.lexicalErrors+" lexical errors and "+
+				parser.getNumberOfSyntaxErrors()+" syntax errors.\n");
+
+		if (cache != null && lexer.lexicalErrors+parser.getNumberOfSyntaxErrors() == 0
+				&& ((FOOLParser.ProgContext) st).progbody() instanceof FOOLParser.LetInProgContext let) {
+			List<ParserRuleContext> declarations = new ArrayList<>(let.cldec()); // in the order of the AST
+			declarations.addAll(let.dec());
+			cache.fingerprint(declarations, tokens);
+			context.cache = cache;
+		}
+
+		log.println("Generating AST.");
+		ASTGenerationSTVisitor visitor = new ASTGenerationSTVisitor(context.types); // use true to visualize the ST
+		Node ast = visitor.visit(st);
+		log.println();
+
+		log.println("Enriching AST via symbol table.");
+		SymbolTableASTVisitor symtableVisitor = new SymbolTableASTVisitor(context.types);
+		symtableVisitor.visit(ast);
+		log.println("You had "+symtableVisitor.stErrors+" symbol table errors.\n");
+
+		if (printAST) {
+			System.out.println("Visualizing Enriched AST.");
+			new PrintEASTVisitor().visit(ast);
+			System.out.println();
+		}
+
+		log.println("Checking Types.");
+		try {
+			TypeCheckEASTVisitor typeCheckVisitor = new TypeCheckEASTVisitor(context);
+			TypeNode mainType = typeCheckVisitor.visit(ast);
+			log.print("Type of main program expression is: ");
+			if (printAST) new PrintEASTVisitor().visit(mainType);
+			else log.println(FOOLlib.extractNodeName(mainType.getClass().getName()));
+		} catch (IncomplException e) {
+			log.println("Could not determine main program expression type due to errors detected before type checking.");
+		} catch (TypeException e) {
+			context.typeErrors++;
+			log.println("Type checking error in main program expression: "+e.text);
+		}
+		log.println("You had "+context.typeErrors+" type checking errors.\n");
+		if (context.cache != null) context.cache.save();
+
+		frontEndErrors = lexer.lexicalErrors+parser.getNumberOfSyntaxErrors()+symtableVisitor.stErrors+context.typeErrors;
+		log.println("You had a total of "+frontEndErrors+" front-end errors.\n");
+
+		if (frontEndErrors > 0) return null;
+
+		if (optLevel > 0 && inlineBudget > 0) {
+			log.println("Inlining functions.");
+			InliningEASTVisitor inlining = new InliningEASTVisitor(inlineBudget);
+			ast = inlining.visit(ast);
+			log.println("Inlined "+inlining.inlinedCalls()+" calls.\n");
+		}
+
+		if (optLevel > 0) {
+			log.println("Folding constants.");
+			ConstantFoldingEASTVisitor folding = new ConstantFoldingEASTVisitor();
+			ast = folding.fold(ast);
+			log.println("Removed "+folding.removedNodes()+" nodes.\n");
+
+			log.println("Devirtualizing method calls.");
+			DevirtualizationEASTVisitor devirtualization = new DevirtualizationEASTVisitor();
+			ast = devirtualization.visit(ast);
+			for (String site : devirtualization.devirtualizedCalls()) log.println("  "+site);
+			log.println("Devirtualized "+devirtualization.devirtualizedCalls().size()+" of "+
+					devirtualization.methodCalls()+" method calls.\n");
+		}
+
+		log.println("Generating code.");
+		CodeGenerationASTVisitor codegen = new CodeGenerationASTVisitor(context);
+		codegen.tailCalls = optLevel > 0;
+		codegen.jumpingCode = optLevel > 0;
+		Code code = codegen.visit(ast);
+		if (optLevel > 0) {
+			PeepholeOptimizer peephole = new PeepholeOptimizer(codegen.rootMaps.keySet());
+			code = peephole.optimize(code);
+			log.print(peephole.report());
+		}
+		log.println();
+
+		log.println("Assembling generated code.");
+		Assembler asm = new Assembler();
+		code.assemble(asm);
+		asm.finish();
+
+		// root maps of the garbage collector, from GC point labels to code addresses
+		Map<Integer, RootMap> rootMaps = new HashMap<>();
+		codegen.rootMaps.forEach((label, map) -> rootMaps.put(asm.labels().get(label), map));
+		return new Result(code, asm, rootMaps);
+	}
+}
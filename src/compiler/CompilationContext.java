@@ -0,0 +1,42 @@
+package compiler;
+
+import compiler.lib.Code;
+
+import static compiler.lib.FOOLlib.nlJoin;
+
+// State of one compilation, shared by its visitors: a new context for each program, so that
+// programs can be compiled at the same time on different threads and every compilation
+// numbers its labels from 0.
+public class CompilationContext {
+
+    final TypeTable types = new TypeTable();
+    final TypeRels typeRels = new TypeRels(types);
+    int typeErrors = 0;
+    IncrementalCache cache; // of the declarations already type checked, null if the compilation is not incremental
+
+    private int labCount = 0;
+
+    public String freshLabel() {
+        return "label" + (labCount++);
+    }
+
+    private int funlabCount = 0;
+
+    public String freshFunLabel() {
+        return "function" + (funlabCount++);
+    }
+
+    private Code funCode = null; // of the functions and methods, after the main program
+
+    public void putCode(Code c) {
+        funCode = nlJoin(funCode, c);
+    }
+
+    public Code getCode() {
+        return funCode;
+    }
+
+    public int typeErrors() {
+        return typeErrors;
+    }
+}
@@ -0,0 +1,56 @@
+package compiler;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Thin client of CompileServer: sends a program to be compiled (and run, with -run), prints the answer
+// of the server as it arrives and exits with the status sent last by the server.
+//
+// Usage: java compiler.CompileClient [-port n | -socket path] [-run] [-O<level>] file.fool
+public class CompileClient {
+
+    public static void main(String[] args) throws Exception {
+        Integer port = null;
+        Path socket = null, file = null;
+        String command = "compile";
+        int optLevel = 1;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-port" -> port = Integer.parseInt(args[++i]);
+                case "-socket" -> socket = Path.of(args[++i]);
+                case "-run" -> command = "run";
+                default -> {
+                    if (args[i].startsWith("-O")) optLevel = Integer.parseInt(args[i].substring(2));
+                    else file = Path.of(args[i]);
+                }
+            }
+        }
+        if (file == null) {
+            System.out.println("Usage: java compiler.CompileClient [-port n | -socket path] [-run] [-O<level>] file.fool");
+            System.exit(1);
+        }
+
+        byte[] source = Files.readAllBytes(file);
+        int status = 3;
+        try (SocketChannel channel = socket != null ? SocketChannel.open(StandardProtocolFamily.UNIX)
+                : SocketChannel.open()) {
+            channel.connect(CompileServer.address(port, socket));
+            OutputStream out = Channels.newOutputStream(channel);
+            out.write((command + " " + optLevel + " " + source.length + " " + file + "\n").getBytes(StandardCharsets.UTF_8));
+            out.write(source);
+            out.flush();
+            var in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+            for (String line = in.readLine(); line != null; line = in.readLine())
+                if (line.startsWith("exit ")) status = Integer.parseInt(line.substring(5)); // the last line
+                else System.out.println(line);
+        }
+        System.exit(status);
+    }
+}
@@ -0,0 +1,321 @@
+package compiler;
+
+import org.antlr.v4.runtime.CharStreams;
+import svm.ObjectFile;
+import svm.OutputSink;
+import svm.ProgramRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Compile-and-run daemon: a long-lived JVM in which the ANTLR parser caches (the ATN, deserialized once,
+// and the DFA built by prediction, shared by all the parsers) and the JIT-compiled compiler stay warm,
+// so that a request costs just the compilation of the program, or nothing if it is in the cache.
+// Requests are served concurrently, each compilation with its own CompilationContext (see Compilation),
+// and programs run in a ProgramRunner, within a time limit.
+//
+// Protocol, one request per connection (see CompileClient): the client sends the line
+//   compile|run <optLevel> <length> <name>
+// followed by <length> bytes of UTF-8 source text, at most MAX_SOURCE; the server answers with text lines:
+// the diagnostics of the compilation, then (for run) the output of the program as it is printed and last "exit <status>",
+// with status 0 if all went well, 1 for front-end errors, 2 for a run-time error or an exceeded limit,
+// 3 for a bad request; then it closes the connection.
+// Compiled programs are cached by SHA-256 of optimization level and source text, at most CACHE_SIZE of
+// them (the least recently used go first); a program is compiled once, the requests for it that arrive
+// meanwhile wait for that compilation. The .fool files in the directories given with -watch are
+// compiled at startup and whenever they are created or modified (WatchService), once the events for them
+// stop for WATCH_DELAY and if they are not empty (as when just created, or truncated before being
+// written): their object file (.svmo) is written next to them, as by Test.
+//
+// Usage: java compiler.CompileServer [-port n | -socket path] [-watch directory]... [-parallelism n] [-timeout millis]
+public class CompileServer {
+
+    public static final int DEFAULT_PORT = 7070;
+    static final int CACHE_SIZE = 256;
+    static final int MAX_SOURCE = 16 * 1024 * 1024; // bytes of a request
+    static final Duration WATCH_DELAY = Duration.ofMillis(100);
+
+    // a compiled program, or the diagnostics of a program with front-end errors (program is null)
+    private record Entry(Compilation.Result result, ProgramRunner.Program program, String diagnostics) {
+    }
+
+    private final Map<String, CompletableFuture<Entry>> cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<Entry>> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    });
+    private final ProgramRunner runner;
+    private final ProgramRunner.Limits limits;
+    private final ThreadOutput threadOut = new ThreadOutput(System.out), threadErr = new ThreadOutput(System.err);
+    private int hits, misses;
+
+    CompileServer(int parallelism, Duration timeout) {
+        runner = new ProgramRunner(parallelism);
+        limits = new ProgramRunner.Limits(Long.MAX_VALUE, timeout);
+        // the visitors and ANTLR report errors on System.out and System.err: they go to the client of the thread
+        System.setOut(new PrintStream(threadOut, true));
+        System.setErr(new PrintStream(threadErr, true));
+    }
+
+    // System.out or System.err of each thread: the stream of the request it serves, if any
+    private static class ThreadOutput extends OutputStream {
+        private final OutputStream fallback;
+        private final ThreadLocal<OutputStream> target = new ThreadLocal<>();
+
+        ThreadOutput(OutputStream fallback) {
+            this.fallback = fallback;
+        }
+
+        private OutputStream out() {
+            OutputStream out = target.get();
+            return out != null ? out : fallback;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out().write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out().flush();
+        }
+    }
+
+    private static String hash(int optLevel, String source) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update((byte) optLevel);
+            return HexFormat.of().formatHex(digest.digest(source.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // the cached compilation of the source, compiled now if there is none, or being compiled
+    private Entry compile(String name, String source, int optLevel) {
+        String key = hash(optLevel, source);
+        var compiling = new CompletableFuture<Entry>();
+        CompletableFuture<Entry> cached = cache.putIfAbsent(key, compiling); // atomic: one compilation per key
+        synchronized (this) {
+            if (cached != null) hits++;
+            else misses++;
+        }
+        if (cached != null) return cached.join();
+        try {
+            compiling.complete(compileNow(name, source, optLevel));
+        } catch (RuntimeException | Error e) { // not cached, the requests waiting for it fail too
+            cache.remove(key, compiling);
+            compiling.completeExceptionally(e);
+            throw e;
+        }
+        return compiling.join();
+    }
+
+    private Entry compileNow(String name, String source, int optLevel) {
+        var diagnostics = new ByteArrayOutputStream();
+        var printer = new PrintStream(diagnostics, true, StandardCharsets.UTF_8);
+        threadOut.target.set(printer);
+        threadErr.target.set(printer);
+        try {
+            var compilation = new Compilation();
+            compilation.optLevel = optLevel;
+            Compilation.Result result = compilation.compile(CharStreams.fromString(source, name));
+            ProgramRunner.Program program = null;
+            if (result != null) {
+                int[] code = Arrays.copyOf(result.asm().code(), result.asm().length()); // fused by Program
+                program = new ProgramRunner.Program(name, new ObjectFile(code, result.asm().labels(), result.rootMaps()));
+            } else printer.println("You had a total of " + compilation.frontEndErrors() + " front-end errors.");
+            return new Entry(result, program, diagnostics.toString(StandardCharsets.UTF_8));
+        } finally {
+            threadOut.target.remove();
+            threadErr.target.remove();
+        }
+    }
+
+    private void serve(SocketChannel channel) {
+        try (channel; InputStream in = Channels.newInputStream(channel); OutputStream out = Channels.newOutputStream(channel)) {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            String[] header = readLine(in).split(" ", 4);
+            int status;
+            if (header.length < 4 || !(header[0].equals("compile") || header[0].equals("run"))
+                    || !header[1].matches("\\d{1,9}") || !header[2].matches("\\d{1,18}")) { // no overflow
+                writer.write("Bad request, expected: compile|run <optLevel> <length> <name>\n");
+                status = 3;
+            } else if (Long.parseLong(header[2]) > MAX_SOURCE) { // not read
+                writer.write("Bad request, the source is longer than " + MAX_SOURCE + " bytes\n");
+                status = 3;
+            } else {
+                int optLevel = Integer.parseInt(header[1]);
+                String source = new String(in.readNBytes(Integer.parseInt(header[2])), StandardCharsets.UTF_8);
+                Entry entry = compile(header[3], source, optLevel);
+                writer.write(entry.diagnostics());
+                status = entry.program() == null ? 1 : 0;
+                if (status == 0 && header[0].equals("run")) {
+                    writer.flush();
+                    var result = runner.submit(entry.program(), limits, OutputSink.buffered(out)).join();
+                    if (result.status() != ProgramRunner.Status.HALTED) {
+                        writer.write(result.status() + ": " + result.error() + "\n");
+                        status = 2;
+                    }
+                }
+            }
+            writer.write("exit " + status + "\n");
+            writer.flush();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Request failed: " + e);
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        var line = new ByteArrayOutputStream();
+        for (int b = in.read(); b != '\n' && b >= 0; b = in.read()) line.write(b);
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    // compiles a watched file and writes its object file
+    private void compileFile(Path file) {
+        try {
+            Entry entry = compile(file.toString(), CharStreams.fromPath(file).toString(), 1);
+            if (entry.result() != null) {
+                var asm = entry.result().asm();
+                ObjectFile.write(Path.of(file + ".svmo"), asm.code(), asm.length(), asm.labels(), entry.result().rootMaps());
+                System.out.println("Compiled " + file);
+            } else System.out.print("Errors in " + file + ":\n" + entry.diagnostics());
+        } catch (IOException e) {
+            System.out.println("Cannot compile " + file + ": " + e.getMessage());
+        }
+    }
+
+    private void watch(List<Path> dirs) throws IOException {
+        WatchService watcher = dirs.get(0).getFileSystem().newWatchService();
+        for (Path dir : dirs) {
+            dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            try (Stream<Path> files = Files.list(dir)) {
+                files.filter(CompileServer::isSource).forEach(this::compileFile);
+            }
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                while (true) {
+                    // the files of the events up to a pause of WATCH_DELAY: a file being written is compiled once, at the end
+                    Set<Path> changed = new LinkedHashSet<>();
+                    for (WatchKey key = watcher.take(); key != null; key = watcher.poll(WATCH_DELAY.toMillis(), TimeUnit.MILLISECONDS)) {
+                        for (WatchEvent<?> event : key.pollEvents())
+                            if (event.context() instanceof Path name) changed.add(((Path) key.watchable()).resolve(name));
+                        key.reset();
+                    }
+                    for (Path file : changed)
+                        if (isSource(file) && Files.isRegularFile(file) && !isEmpty(file)) compileFile(file);
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                // stopped
+            }
+        }, "watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static boolean isSource(Path file) {
+        return file.getFileName().toString().endsWith(".fool");
+    }
+
+    private static boolean isEmpty(Path file) {
+        try {
+            return Files.size(file) == 0;
+        } catch (IOException e) { // deleted meanwhile
+            return true;
+        }
+    }
+
+    synchronized String cacheReport() {
+        return String.format("Cache: %d programs, %d hits, %d misses", cache.size(), hits, misses);
+    }
+
+    static SocketAddress address(Integer port, Path socket) {
+        return socket != null ? UnixDomainSocketAddress.of(socket)
+                : new InetSocketAddress(InetAddress.getLoopbackAddress(), port != null ? port : DEFAULT_PORT);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Integer port = null;
+        Path socket = null;
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        Duration timeout = Duration.ofSeconds(60);
+        List<Path> watched = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-port" -> port = Integer.parseInt(args[++i]);
+                case "-socket" -> socket = Path.of(args[++i]);
+                case "-watch" -> watched.add(Path.of(args[++i]));
+                case "-parallelism" -> parallelism = Integer.parseInt(args[++i]);
+                case "-timeout" -> timeout = Duration.ofMillis(Long.parseLong(args[++i]));
+                default -> {
+                    System.out.println("Usage: java compiler.CompileServer [-port n | -socket path] [-watch directory]... [-parallelism n] [-timeout millis]");
+                    System.exit(1);
+                }
+            }
+        }
+
+        var server = new CompileServer(parallelism, timeout);
+        if (!watched.isEmpty()) server.watch(watched);
+        ServerSocketChannel listener;
+        if (socket != null) {
+            Files.deleteIfExists(socket); // left by a previous run
+            listener = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else listener = ServerSocketChannel.open();
+        listener.bind(address(port, socket));
+        System.out.println("Listening on " + listener.getLocalAddress());
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.println(server.cacheReport())));
+
+        ExecutorService requests = Executors.newCachedThreadPool();
+        while (true) {
+            SocketChannel channel = listener.accept();
+            requests.execute(() -> server.serve(channel));
+        }
+    }
+}
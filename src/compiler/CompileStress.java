@@ -0,0 +1,86 @@
+package compiler;
+
+import org.antlr.v4.runtime.CharStreams;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Stress test of concurrent compilation: compiles the given programs on many threads at once, in the
+// same JVM, and checks that every compilation produces exactly the code of a compilation done alone
+// (same instructions and the same labels, numbered from 0), i.e. that compilations share no state.
+//
+// Usage: java compiler.CompileStress [-threads n] [-rounds r] [-O<level>] file.fool ...
+public class CompileStress {
+
+    private record Program(String name, String source, int[] code) {
+    }
+
+    private static int[] compile(String source, int optLevel) {
+        var compilation = new Compilation();
+        compilation.optLevel = optLevel;
+        Compilation.Result result = compilation.compile(CharStreams.fromString(source));
+        if (result == null) throw new IllegalArgumentException(compilation.frontEndErrors() + " front-end errors");
+        return Arrays.copyOf(result.asm().code(), result.asm().length());
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = 4 * Runtime.getRuntime().availableProcessors(), rounds = 50, optLevel = 1;
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-threads" -> threads = Integer.parseInt(args[++i]);
+                case "-rounds" -> rounds = Integer.parseInt(args[++i]);
+                default -> {
+                    if (args[i].startsWith("-O")) optLevel = Integer.parseInt(args[i].substring(2));
+                    else files.add(Path.of(args[i]));
+                }
+            }
+        }
+        if (files.isEmpty()) {
+            System.out.println("Usage: java compiler.CompileStress [-threads n] [-rounds r] [-O<level>] file.fool ...");
+            System.exit(1);
+        }
+
+        // reference code, each program compiled alone
+        List<Program> programs = new ArrayList<>();
+        for (Path file : files) {
+            String source = CharStreams.fromPath(file).toString(); // decoded as the compiler does
+            programs.add(new Program(file.toString(), source, compile(source, optLevel)));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Boolean>> results = new ArrayList<>();
+        List<Program> submitted = new ArrayList<>();
+        final int level = optLevel;
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++)
+            for (int t = 0; t < threads; t++) {
+                Program p = programs.get((r + t) % programs.size()); // every thread mixes all the programs
+                submitted.add(p);
+                results.add(executor.submit(() -> Arrays.equals(compile(p.source(), level), p.code())));
+            }
+        int mismatches = 0, failures = 0;
+        for (int i = 0; i < results.size(); i++)
+            try {
+                if (!results.get(i).get()) {
+                    mismatches++;
+                    System.out.println("Different code for " + submitted.get(i).name());
+                }
+            } catch (Exception e) {
+                failures++;
+                System.out.println("Compilation of " + submitted.get(i).name() + " failed: " + e.getCause());
+            }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        executor.shutdown();
+
+        System.out.printf("%d compilations of %d programs on %d threads in %d ms (%.1f per second): %d different, %d failed%n",
+                results.size(), programs.size(), threads, millis, results.size() * 1000.0 / Math.max(millis, 1),
+                mismatches, failures);
+        if (mismatches + failures > 0) System.exit(1);
+    }
+}
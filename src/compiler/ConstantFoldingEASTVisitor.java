@@ -0,0 +1,164 @@
+package compiler;
+
+import compiler.AST.*;
+import compiler.lib.Node;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Optimization pass on the enriched and type checked AST, run before code generation:
+// - arithmetic (but a division by zero, left to fail at run time), comparisons and Not, And, Or
+//   on literals are folded into a literal
+// - And and Or whose left operand is a literal are simplified (they are evaluated short-circuit)
+// - a variable initialised with a literal is replaced by the literal wherever it is used
+//   (its declaration stays, the offsets of the following ones do not change)
+// - an if whose condition is a literal is replaced by the chosen branch
+// Integer arithmetic wraps around as in the SVM.
+public class ConstantFoldingEASTVisitor extends RewritingEASTVisitor {
+
+    private final Map<STentry, Node> constants = new HashMap<>(); // variables initialised with a literal
+    private int removed;
+
+    ConstantFoldingEASTVisitor() {
+    }
+
+    ConstantFoldingEASTVisitor(boolean debug) {
+        super(debug);
+    } // enables print for debugging
+
+    // folds the program and counts the nodes removed
+    public Node fold(Node ast) {
+        Node result = visit(ast);
+        removed = nodes - size(result);
+        return result;
+    }
+
+    public int removedNodes() {
+        return removed;
+    }
+
+    private static Integer value(Node n) { // booleans are 1 and 0, as in the SVM
+        if (n instanceof IntNode i) return i.val;
+        if (n instanceof BoolNode b) return b.val ? 1 : 0;
+        return null;
+    }
+
+    private static IntNode intNode(int val, Node old) {
+        return at(new IntNode(val), old);
+    }
+
+    private static BoolNode boolNode(boolean val, Node old) {
+        return at(new BoolNode(val), old);
+    }
+
+    @Override
+    public Node visitNode(VarNode n) {
+        VarNode v = (VarNode) super.visitNode(n);
+        if (value(v.exp) != null && n.entry != null) constants.put(n.entry, v.exp);
+        return v;
+    }
+
+    @Override
+    public Node visitNode(IfNode n) {
+        if (print) printNode(n);
+        Node cond = visit(n.cond), th = visit(n.th), el = visit(n.el);
+        if (cond instanceof BoolNode b) return b.val ? th : el;
+        return at(new IfNode(cond, th, el), n);
+    }
+
+    @Override
+    public Node visitNode(EqualNode n) {
+        if (print) printNode(n);
+        Node left = visit(n.left), right = visit(n.right);
+        Integer l = value(left), r = value(right);
+        if (l != null && r != null) return boolNode(l.equals(r), n);
+        return at(new EqualNode(left, right), n);
+    }
+
+    @Override
+    public Node visitNode(GreaterEqualNode n) {
+        if (print) printNode(n);
+        Node left = visit(n.left), right = visit(n.right);
+        Integer l = value(left), r = value(right);
+        if (l != null && r != null) return boolNode(l >= r, n);
+        return at(new GreaterEqualNode(left, right), n);
+    }
+
+    @Override
+    public Node visitNode(LessEqualNode n) {
+        if (print) printNode(n);
+        Node left = visit(n.left), right = visit(n.right);
+        Integer l = value(left), r = value(right);
+        if (l != null && r != null) return boolNode(l <= r, n);
+        return at(new LessEqualNode(left, right), n);
+    }
+
+    @Override
+    public Node visitNode(PlusNode n) {
+        if (print) printNode(n);
+        Node left = visit(n.left), right = visit(n.right);
+        Integer l = value(left), r = value(right);
+        if (l != null && r != null) return intNode(l + r, n);
+        return at(new PlusNode(left, right), n);
+    }
+
+    @Override
+    public Node visitNode(MinusNode n) {
+        if (print) printNode(n);
+        Node left = visit(n.left), right = visit(n.right);
+        Integer l = value(left), r = value(right);
+        if (l != null && r != null) return intNode(l - r, n);
+        return at(new MinusNode(left, right), n);
+    }
+
+    @Override
+    public Node visitNode(TimesNode n) {
+        if (print) printNode(n);
+        Node left = visit(n.left), right = visit(n.right);
+        Integer l = value(left), r = value(right);
+        if (l != null && r != null) return intNode(l * r, n);
+        return at(new TimesNode(left, right), n);
+    }
+
+    @Override
+    public Node visitNode(DivNode n) {
+        if (print) printNode(n);
+        Node left = visit(n.left), right = visit(n.right);
+        Integer l = value(left), r = value(right);
+        if (l != null && r != null && r != 0) return intNode(l / r, n);
+        return at(new DivNode(left, right), n);
+    }
+
+    @Override
+    public Node visitNode(NotNode n) {
+        if (print) printNode(n);
+        Node exp = visit(n.exp);
+        if (exp instanceof BoolNode b) return boolNode(!b.val, n);
+        return at(new NotNode(exp), n);
+    }
+
+    @Override
+    public Node visitNode(AndNode n) {
+        if (print) printNode(n);
+        Node left = visit(n.left), right = visit(n.right);
+        if (left instanceof BoolNode b) return b.val ? right : left; // the right operand is evaluated only if left is true
+        return at(new AndNode(left, right), n);
+    }
+
+    @Override
+    public Node visitNode(OrNode n) {
+        if (print) printNode(n);
+        Node left = visit(n.left), right = visit(n.right);
+        if (left instanceof BoolNode b) return b.val ? left : right; // the right operand is evaluated only if left is false
+        return at(new OrNode(left, right), n);
+    }
+
+    @Override
+    public Node visitNode(IdNode n) {
+        if (print) printNode(n, n.id);
+        Node constant = constants.get(n.entry);
+        if (constant != null)
+            return constant instanceof IntNode i ? intNode(i.val, n) : boolNode(((BoolNode) constant).val, n);
+        return n;
+    }
+}
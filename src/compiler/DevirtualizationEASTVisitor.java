@@ -0,0 +1,73 @@
+package compiler;
+
+import compiler.AST.*;
+import compiler.lib.DecNode;
+import compiler.lib.Node;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Devirtualization of method calls by class hierarchy analysis, on the enriched and type checked AST.
+// The whole program is known: all the classes are declared in the global declaration list, so the dispatch
+// table of each class can be rebuilt from the virtual table entries of its methods (an inherited method has
+// the same STentry in the subclass, an overriding one gets a new STentry at the same offset).
+// A call id1.id2() dispatches to the method at the offset of id2 in the dispatch table of the class of the
+// object, which is the static class of id1 or one of its subclasses (or null, which has no dispatch table):
+// if all of them have the same method there, the call is marked as direct and jumps to it, after a load of
+// the dispatch pointer that traps on null as the dispatched call does (see
+// CodeGenerationASTVisitor.visitNode(ClassCallNode)).
+public class DevirtualizationEASTVisitor extends RewritingEASTVisitor {
+
+    private final Map<String, List<STentry>> dispatchTables = new HashMap<>(); // by class id
+    private final Map<String, String> superClasses = new HashMap<>();
+    private final Map<STentry, String> methodNames = new HashMap<>(); // class.method of each implementation
+    private final List<String> sites = new ArrayList<>(); // devirtualized calls
+    private int calls;
+
+    @Override
+    public Node visitNode(ProgLetInNode n) {
+        for (DecNode dec : n.declist)
+            if (dec instanceof ClassNode c) {
+                List<STentry> table = new ArrayList<>();
+                if (c.superId != null) {
+                    table.addAll(dispatchTables.get(c.superId));
+                    superClasses.put(c.id, c.superId);
+                }
+                for (MethodNode m : c.methodList) {
+                    if (m.offset < table.size()) table.set(m.offset, m.entry);
+                    else table.add(m.entry);
+                    methodNames.put(m.entry, c.id + "." + m.id);
+                }
+                dispatchTables.put(c.id, table);
+            }
+        return super.visitNode(n);
+    }
+
+    @Override
+    public Node visitNode(ClassCallNode n) {
+        ClassCallNode c = (ClassCallNode) super.visitNode(n);
+        calls++;
+        String classId = ((RefTypeNode) n.entry.type).id;
+        for (var table : dispatchTables.entrySet())
+            if (isSubclass(table.getKey(), classId) && table.getValue().get(n.methodEntry.offset) != n.methodEntry)
+                return c; // overridden below classId
+        c.direct = true;
+        sites.add(String.format("line %d: %s.%s() -> %s", n.getLine(), n.objectId, n.methodId, methodNames.get(n.methodEntry)));
+        return c;
+    }
+
+    private boolean isSubclass(String id, String superId) {
+        while (id != null && !id.equals(superId)) id = superClasses.get(id);
+        return id != null;
+    }
+
+    public List<String> devirtualizedCalls() {
+        return sites;
+    }
+
+    public int methodCalls() {
+        return calls;
+    }
+}
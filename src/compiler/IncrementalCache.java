@@ -0,0 +1,231 @@
+package compiler;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+
+// On-disk cache of the type checking of the top-level declarations, for incremental compilation: a
+// recompilation type checks only the declarations that changed and the ones whose dependencies changed
+// their signature (parsing, symbol table, optimizations and code generation still run on the whole program:
+// code generation is a linear pass that costs less than reading its result back).
+// The keys of a declaration are 64-bit hashes of its source text and of the keys of its dependencies, the
+// previous global declarations whose name is among its identifiers (no forward references: they are all it
+// can use, directly or through them):
+// - signature key: its text outside of the bodies (initializer, local declarations and expression of
+//   functions and methods), with the signature keys of the dependencies named there
+// - type key: its whole text with the signature keys of all its dependencies; a declaration without type
+//   errors is recorded under it, as it is type checked against their types only (and the class hierarchy,
+//   part of the signatures): changing the body of a function does not check again its dependants.
+// The keys are not cryptographic: the cache trusts the files in its directory. They are kept in a single
+// file, read once per compilation, at most MAX_KEYS of them (the least recently recorded go first).
+public class IncrementalCache {
+
+    private static final int VERSION = 2;
+    private static final byte LETTER = 1, DIGIT = 2;
+    private static final byte[] KIND = new byte[256]; // of the characters of the identifiers, 0 for the others
+    static final int MAX_KEYS = 1 << 16;
+    private static final String FILE = "typechecked";
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) KIND[c] = KIND[Character.toUpperCase(c)] = LETTER;
+        for (char c = '0'; c <= '9'; c++) KIND[c] = DIGIT;
+    }
+
+    private final Path file;
+    private final Set<Long> checked = new LinkedHashSet<>(); // type keys recorded, in order of recording
+    private boolean loaded, changed;
+    private final List<Long> signatureKeys = new ArrayList<>(), typeKeys = new ArrayList<>();
+    private int typeHits, typeMisses;
+
+    public IncrementalCache(Path dir) {
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        file = dir.resolve(FILE);
+    }
+
+    // 64-bit hash of a sequence of bytes and keys: CRC32 and CRC32C, two different polynomials, both
+    // intrinsics of the JVM
+    private static class Hash {
+        private final CRC32 crc = new CRC32();
+        private final CRC32C crcC = new CRC32C();
+
+        Hash add(byte[] text, int from, int to) { // the bytes from..to-1
+            crc.update(text, from, to - from);
+            crcC.update(text, from, to - from);
+            return add(to - from); // the length separates the parts
+        }
+
+        Hash add(long key) {
+            for (int i = 0; i < 64; i += 8) {
+                crc.update((int) (key >>> i));
+                crcC.update((int) (key >>> i));
+            }
+            return this;
+        }
+
+        long key() {
+            return crc.getValue() << 32 | crcC.getValue();
+        }
+    }
+
+    // computes the keys of the top-level declarations, in the order of ProgLetInNode.declist
+    // (one compilation at a time: the keys are those of the last program)
+    void fingerprint(List<? extends ParserRuleContext> declarations, TokenStream tokens) {
+        signatureKeys.clear();
+        typeKeys.clear();
+        CharStream chars = tokens.getTokenSource().getInputStream();
+        byte[] text = chars.getText(Interval.of(0, chars.size() - 1)).getBytes(StandardCharsets.ISO_8859_1); // a byte a
+        // character, as the token indices (the characters outside Latin-1 can only be in comments, where they become "?")
+        Map<String, Integer> globals = new HashMap<>(); // name -> index of the declaration
+        long[] names = new long[1 << 10]; // bit set of the hash codes of the global names, mod 2^16
+        for (int i = 0; i < declarations.size(); i++) {
+            ParserRuleContext dec = declarations.get(i);
+            List<int[]> bodies = bodies(dec);
+            var signature = new Hash(); // the text without the bodies, which separate its parts
+            int start = dec.getStart().getStartIndex(), from = start, end = dec.getStop().getStopIndex() + 1;
+            for (int[] b : bodies) {
+                signature.add(text, from, b[0]);
+                from = b[1];
+            }
+            signature.add(text, from, end);
+            // the identifiers are scanned as the lexer does, on the bytes: those in comments are dependencies
+            // too, which only makes the keys change more often
+            List<Integer> deps = new ArrayList<>(), signatureDeps = new ArrayList<>();
+            int body = 0; // the first body not before the identifier
+            for (int k = start; k < end; ) {
+                byte kind = KIND[text[k] & 0xFF];
+                if (kind != LETTER) { // NUM, maybe followed by an ID, or anything else
+                    k++;
+                    continue;
+                }
+                int id = k, hash = 0; // String.hashCode of the identifier
+                do hash = 31 * hash + text[k++]; while (k < end && KIND[text[k] & 0xFF] != 0);
+                if ((names[hash >>> 6 & 1023] & 1L << hash) == 0) continue; // not a global name
+                Integer dep = globals.get(new String(text, id, k - id, StandardCharsets.ISO_8859_1));
+                if (dep == null) continue;
+                while (body < bodies.size() && bodies.get(body)[1] <= id) body++;
+                if (!deps.contains(dep)) deps.add(dep);
+                if ((body == bodies.size() || id < bodies.get(body)[0]) && !signatureDeps.contains(dep)) signatureDeps.add(dep);
+            }
+            for (int dep : signatureDeps) signature.add(signatureKeys.get(dep));
+            signatureKeys.add(signature.key());
+            var type = new Hash().add(text, start, end);
+            for (int dep : deps) type.add(signatureKeys.get(dep));
+            typeKeys.add(type.key());
+            String name = name(dec);
+            if (name != null) {
+                globals.put(name, i);
+                names[name.hashCode() >>> 6 & 1023] |= 1L << name.hashCode();
+            }
+        }
+    }
+
+    private static String name(ParserRuleContext dec) {
+        if (dec instanceof FOOLParser.VardecContext v) return v.ID().getText();
+        if (dec instanceof FOOLParser.FundecContext f) return f.ID(0).getText();
+        if (dec instanceof FOOLParser.CldecContext c) return c.ID(0).getText();
+        return null;
+    }
+
+    // character ranges (from, to excluded) of the bodies of a declaration, in order: initializer of a variable,
+    // local declarations and expression of a function or of the methods of a class
+    private static List<int[]> bodies(ParserRuleContext dec) {
+        List<int[]> bodies = new ArrayList<>();
+        if (dec instanceof FOOLParser.VardecContext v) bodies.add(range(null, v.exp()));
+        else if (dec instanceof FOOLParser.FundecContext f) bodies.add(range(f.LET(), f.exp()));
+        else if (dec instanceof FOOLParser.CldecContext c)
+            for (var m : c.methdec()) bodies.add(range(m.LET(), m.exp()));
+        return bodies;
+    }
+
+    private static int[] range(TerminalNode let, ParserRuleContext exp) {
+        int start = let != null ? let.getSymbol().getStartIndex() : exp.getStart().getStartIndex();
+        return new int[]{start, exp.getStop().getStopIndex() + 1};
+    }
+
+    boolean enabled(int declarations) { // keys computed for the declarations of the program
+        return typeKeys.size() == declarations;
+    }
+
+    boolean typeChecked(int dec) {
+        load();
+        boolean hit = checked.contains(typeKeys.get(dec));
+        if (hit) typeHits++;
+        else typeMisses++;
+        return hit;
+    }
+
+    void recordTypeChecked(int dec) {
+        Long key = typeKeys.get(dec);
+        checked.remove(key); // the most recent last
+        checked.add(key);
+        changed = true;
+    }
+
+    // File format: VERSION, number of keys, keys (read and written whole: the streams of java.io cost more to
+    // load than the file)
+    private void load() {
+        if (loaded) return;
+        loaded = true;
+        try {
+            ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file));
+            if (in.remaining() < 8 || in.getInt() != VERSION) return;
+            int n = in.getInt();
+            if (in.remaining() != 8L * n) return; // truncated: checked again
+            while (n-- > 0) checked.add(in.getLong());
+        } catch (NoSuchFileException e) { // empty cache
+        } catch (IOException e) { // unreadable: checked again
+            checked.clear();
+        }
+    }
+
+    // writes the keys recorded, if any; written aside and then renamed, for compilations running at the same time
+    void save() {
+        if (!changed) return;
+        changed = false;
+        for (Iterator<Long> i = checked.iterator(); checked.size() > MAX_KEYS; ) {
+            i.next();
+            i.remove();
+        }
+        ByteBuffer out = ByteBuffer.allocate(8 + 8 * checked.size()).putInt(VERSION).putInt(checked.size());
+        for (long key : checked) out.putLong(key);
+        // not createTempFile, whose SecureRandom takes longer to start than the whole cache, nor a concatenation
+        // with +, whose first bootstrap does too
+        Path tmp = file.resolveSibling(FILE.concat(Long.toHexString(ThreadLocalRandom.current().nextLong())));
+        try {
+            Files.write(tmp, out.array(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public String report() {
+        return String.format("Incremental cache: type checking %d hits, %d misses%n", typeHits, typeMisses);
+    }
+}
@@ -0,0 +1,184 @@
+package compiler;
+
+import compiler.AST.*;
+import compiler.lib.Node;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Inlining of calls to small functions, on the enriched and type checked AST (run before constant folding).
+// A call is replaced by the body of the function, with the arguments in place of the parameters, if:
+// - the function has no local declarations and is not recursive (the call graph has no cycle through it;
+//   a cycle can only go through the function and the ones nested in it, which are visited before it)
+// - the call is not inside a method, whose Access Link is an object and not the enclosing frame
+// - the inlined body is at most "budget" nodes bigger than the arguments
+// - it is evaluated as the call would be: an argument that may have side effects (calls, print, new,
+//   division) is allowed only if it is the only one, the rest of the body has none and the parameter
+//   is evaluated exactly once on every path; the other arguments can be evaluated any number of times.
+// The uses of the parameters inside the body of the function are at nesting level = level of the function + 1
+// and offset = 1 + position of the parameter; in the inlined body every access moves to the nesting level
+// of the call, following the static chain from there to the same declarations.
+public class InliningEASTVisitor extends RewritingEASTVisitor {
+
+    private final int budget;
+    private final Map<STentry, FunNode> functions = new HashMap<>(); // visited, by entry
+    private final Map<STentry, Set<STentry>> calls = new HashMap<>(); // call graph
+    private final Set<STentry> recursive = new HashSet<>();
+    private final Deque<STentry> enclosing = new ArrayDeque<>(); // functions whose body is being visited
+    private int inMethod;
+    private int inlined;
+
+    InliningEASTVisitor(int budget) {
+        this.budget = budget;
+    }
+
+    public int inlinedCalls() {
+        return inlined;
+    }
+
+    @Override
+    public Node visitNode(FunNode n) {
+        enclosing.push(n.entry);
+        FunNode f = (FunNode) super.visitNode(n);
+        enclosing.pop();
+        if (reaches(n.entry, n.entry)) recursive.add(n.entry);
+        functions.put(n.entry, f);
+        return f;
+    }
+
+    @Override
+    public Node visitNode(MethodNode n) {
+        inMethod++;
+        try {
+            return super.visitNode(n);
+        } finally {
+            inMethod--;
+        }
+    }
+
+    @Override
+    public Node visitNode(CallNode n) {
+        CallNode call = (CallNode) super.visitNode(n);
+        if (!enclosing.isEmpty()) calls.computeIfAbsent(enclosing.peek(), k -> new HashSet<>()).add(n.entry);
+        FunNode f = functions.get(n.entry);
+        if (f == null || inMethod > 0 || recursive.contains(n.entry) || !f.declist.isEmpty()) return call;
+        int level = n.entry.nl + 1; // of the body of the function
+        int impure = -1;
+        for (int i = 0; i < call.arglist.size(); i++)
+            if (!pure(call.arglist.get(i))) {
+                if (impure >= 0 || uses(f.exp, level, i) != 1 || !pure(f.exp)) return call;
+                impure = i;
+            }
+        var substitution = new Substitution(level, call.nl, call.arglist);
+        Node body = substitution.visit(f.exp);
+        int argSize = 0;
+        for (Node arg : call.arglist) argSize += size(arg);
+        if (substitution.failed || size(body) > budget + argSize) return call;
+        inlined++;
+        return body;
+    }
+
+    private boolean reaches(STentry from, STentry to) {
+        Set<STentry> seen = new HashSet<>();
+        Deque<STentry> todo = new ArrayDeque<>(calls.getOrDefault(from, Set.of()));
+        while (!todo.isEmpty()) {
+            STentry e = todo.pop();
+            if (e == to) return true;
+            if (seen.add(e)) todo.addAll(calls.getOrDefault(e, Set.of()));
+        }
+        return false;
+    }
+
+    // index of the parameter accessed by id, if it is a parameter of the function whose body is at that level
+    private static int param(IdNode id, int level) {
+        return id.entry.nl == level ? id.entry.offset - 1 : -1;
+    }
+
+    // whether the evaluation of an expression has no side effects and always terminates
+    // (parameters, being replaced by arguments, are pure only if the argument is)
+    private static boolean pure(Node n) {
+        if (n instanceof IntNode || n instanceof BoolNode || n instanceof EmptyNode || n instanceof IdNode) return true;
+        if (n instanceof PlusNode e) return pure(e.left) && pure(e.right);
+        if (n instanceof MinusNode e) return pure(e.left) && pure(e.right);
+        if (n instanceof TimesNode e) return pure(e.left) && pure(e.right);
+        if (n instanceof DivNode e) return pure(e.left) && e.right instanceof IntNode i && i.val != 0;
+        if (n instanceof EqualNode e) return pure(e.left) && pure(e.right);
+        if (n instanceof GreaterEqualNode e) return pure(e.left) && pure(e.right);
+        if (n instanceof LessEqualNode e) return pure(e.left) && pure(e.right);
+        if (n instanceof AndNode e) return pure(e.left) && pure(e.right);
+        if (n instanceof OrNode e) return pure(e.left) && pure(e.right);
+        if (n instanceof NotNode e) return pure(e.exp);
+        if (n instanceof IfNode e) return pure(e.cond) && pure(e.th) && pure(e.el);
+        return false;
+    }
+
+    // how many times parameter i is evaluated by a pure body, -1 if it depends on the path
+    private static int uses(Node n, int level, int i) {
+        if (n instanceof IdNode id) return param(id, level) == i ? 1 : 0;
+        if (n instanceof NotNode e) return uses(e.exp, level, i);
+        if (n instanceof IfNode e) {
+            int c = uses(e.cond, level, i), t = uses(e.th, level, i), el = uses(e.el, level, i);
+            return c < 0 || t < 0 || t != el ? -1 : c + t;
+        }
+        if (n instanceof AndNode e) return shortCircuit(uses(e.left, level, i), uses(e.right, level, i));
+        if (n instanceof OrNode e) return shortCircuit(uses(e.left, level, i), uses(e.right, level, i));
+        Node l = null, r = null;
+        if (n instanceof PlusNode e) { l = e.left; r = e.right; }
+        if (n instanceof MinusNode e) { l = e.left; r = e.right; }
+        if (n instanceof TimesNode e) { l = e.left; r = e.right; }
+        if (n instanceof DivNode e) { l = e.left; r = e.right; }
+        if (n instanceof EqualNode e) { l = e.left; r = e.right; }
+        if (n instanceof GreaterEqualNode e) { l = e.left; r = e.right; }
+        if (n instanceof LessEqualNode e) { l = e.left; r = e.right; }
+        if (l == null) return 0; // literals
+        int a = uses(l, level, i), b = uses(r, level, i);
+        return a < 0 || b < 0 ? -1 : a + b;
+    }
+
+    private static int shortCircuit(int left, int right) { // the right operand may not be evaluated
+        return left < 0 || right < 0 || right > 0 ? -1 : left;
+    }
+
+    // copy of the body of a function, moved to the nesting level of a call, with the arguments in place of the parameters
+    private static class Substitution extends RewritingEASTVisitor {
+        private final int level, callLevel;
+        private final List<Node> args;
+        boolean failed; // a method is called on a parameter, which cannot be replaced by an expression
+
+        Substitution(int level, int callLevel, List<Node> args) {
+            this.level = level;
+            this.callLevel = callLevel;
+            this.args = args;
+        }
+
+        @Override
+        public Node visitNode(IdNode n) {
+            int i = param(n, level);
+            if (i >= 0) return args.get(i);
+            IdNode id = at(new IdNode(n.id), n);
+            id.entry = n.entry;
+            id.nl = callLevel;
+            return id;
+        }
+
+        @Override
+        public Node visitNode(CallNode n) {
+            CallNode c = (CallNode) super.visitNode(n);
+            c.nl = callLevel;
+            return c;
+        }
+
+        @Override
+        public Node visitNode(ClassCallNode n) {
+            if (n.entry.nl == level) failed = true;
+            ClassCallNode c = (ClassCallNode) super.visitNode(n);
+            c.nl = callLevel;
+            return c;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package compiler;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+// Parse throughput of FOOLParser on generated programs: full LL prediction (the ANTLR default) against
+// the two-stage SLL/LL parsing of Compilation.parse. Each program has "functions" functions, each one
+// with a local variable and a body made of random arithmetic, comparisons, boolean operators, ifs and
+// calls to the previous functions, nested up to "depth" levels; it is well typed, so it also compiles.
+// The programs are written to dir, tokenized once and then parsed alternately in the two modes,
+// "runs" times each after as many warm-up runs; the best time of each mode is reported.
+//
+// Usage: java compiler.ParseBenchmark [-functions n,...] [-depth d] [-runs r] [-dir directory]
+public class ParseBenchmark {
+
+    private final Random random = new Random(42);
+    private final StringBuilder sb = new StringBuilder();
+    private final int depth;
+    private int function; // being generated
+    private boolean inBody; // of the function, where its variable x can be used
+
+    private ParseBenchmark(int depth) {
+        this.depth = depth;
+    }
+
+    private String program(int functions) {
+        sb.setLength(0);
+        sb.append("let\n");
+        for (function = 0; function < functions; function++) {
+            sb.append("  fun f").append(function).append(":int (a:int, b:int)\n    let var x:int = ");
+            inBody = false;
+            intExp(depth);
+            inBody = true;
+            sb.append(";\n    in if (");
+            boolExp(depth);
+            sb.append(") then {");
+            intExp(depth);
+            sb.append("} else {");
+            intExp(depth);
+            sb.append("};\n");
+        }
+        sb.append("in print(f").append(functions - 1).append("(1, 2));\n");
+        return sb.toString();
+    }
+
+    private void intExp(int d) {
+        int choice = d == 0 ? random.nextInt(3) : random.nextInt(9);
+        switch (choice) {
+            case 0 -> sb.append(random.nextBoolean() ? "a" : "b");
+            case 1 -> sb.append(inBody ? "x" : "a");
+            case 2 -> sb.append(random.nextInt(100));
+            case 3, 4 -> binary(d, " + ");
+            case 5 -> binary(d, " - ");
+            case 6 -> binary(d, " * ");
+            case 7 -> {
+                if (function == 0) {
+                    intExp(d - 1);
+                    return;
+                }
+                sb.append('f').append(random.nextInt(function)).append('(');
+                intExp(d - 1);
+                sb.append(", ");
+                intExp(d - 1);
+                sb.append(')');
+            }
+            default -> {
+                sb.append("if ");
+                boolExp(d - 1);
+                sb.append(" then {");
+                intExp(d - 1);
+                sb.append("} else {");
+                intExp(d - 1);
+                sb.append('}');
+            }
+        }
+    }
+
+    private void binary(int d, String op) {
+        sb.append('(');
+        intExp(d - 1);
+        sb.append(op);
+        intExp(d - 1);
+        sb.append(')');
+    }
+
+    private void boolExp(int d) {
+        int choice = d == 0 ? 0 : random.nextInt(6);
+        String op = switch (choice) {
+            case 0, 1 -> " <= ";
+            case 2 -> " >= ";
+            case 3 -> " == ";
+            case 4 -> " && ";
+            default -> " || ";
+        };
+        if (choice >= 4) {
+            sb.append('(');
+            boolExp(d - 1);
+            sb.append(op);
+            boolExp(d - 1);
+            sb.append(')');
+        } else {
+            intExp(Math.max(d - 1, 0));
+            sb.append(op);
+            intExp(Math.max(d - 1, 0));
+        }
+    }
+
+    // nanoseconds to parse the tokens, which are already buffered
+    private static long parse(CommonTokenStream tokens, boolean twoStage) {
+        tokens.seek(0);
+        var parser = new FOOLParser(tokens);
+        long start = System.nanoTime();
+        if (twoStage) Compilation.parse(parser);
+        else parser.prog();
+        long time = System.nanoTime() - start;
+        if (parser.getNumberOfSyntaxErrors() > 0) throw new IllegalStateException("Syntax errors in a generated program");
+        return time;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = {100, 1000, 5000};
+        int depth = 5, runs = 5;
+        Path dir = Path.of(System.getProperty("java.io.tmpdir"));
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-functions" -> {
+                    String[] list = args[++i].split(",");
+                    sizes = new int[list.length];
+                    for (int k = 0; k < list.length; k++) sizes[k] = Integer.parseInt(list[k]);
+                }
+                case "-depth" -> depth = Integer.parseInt(args[++i]);
+                case "-runs" -> runs = Integer.parseInt(args[++i]);
+                case "-dir" -> dir = Path.of(args[++i]);
+                default -> {
+                    System.out.println("Usage: java compiler.ParseBenchmark [-functions n,...] [-depth d] [-runs r] [-dir directory]");
+                    System.exit(1);
+                }
+            }
+        }
+
+        var generator = new ParseBenchmark(depth);
+        System.out.println("functions      bytes     tokens   LL ms  SLL/LL ms  speedup  LL tokens/s  SLL/LL tokens/s");
+        for (int functions : sizes) {
+            Path file = dir.resolve("parse" + functions + ".fool");
+            Files.writeString(file, generator.program(functions));
+            var tokens = new CommonTokenStream(new FOOLLexer(CharStreams.fromPath(file)));
+            tokens.fill();
+            long ll = Long.MAX_VALUE, twoStage = Long.MAX_VALUE;
+            for (int r = 0; r < 2 * runs; r++) { // alternated, the first half is warm-up
+                long t1 = parse(tokens, false), t2 = parse(tokens, true);
+                if (r >= runs) {
+                    ll = Math.min(ll, t1);
+                    twoStage = Math.min(twoStage, t2);
+                }
+            }
+            int n = tokens.size();
+            System.out.printf("%9d %10d %10d %7.1f %10.1f %7.2fx %12.0f %16.0f%n", functions, Files.size(file), n,
+                    ll / 1e6, twoStage / 1e6, (double) ll / twoStage, n / (ll / 1e9), n / (twoStage / 1e9));
+        }
+    }
+}
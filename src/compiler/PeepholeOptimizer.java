@@ -0,0 +1,200 @@
+package compiler;
+
+import compiler.lib.Code;
+import svm.Opcodes;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static compiler.lib.FOOLlib.nlJoin;
+
+// Peephole optimizer of the generated code, run on the instruction list before assembly.
+// Instructions are appended one at a time to the output, whose tail (the window) is rewritten
+// by the rules below as long as one of them applies, so that a rewriting can enable another one:
+//   BOOLEAN_TEST     push a, b L2, L1:, push b, L2:, push c, beq T
+//                    a boolean materialised by a comparison, Not, And or Or and immediately tested
+//                    (by IfNode, NotNode, AndNode, OrNode): the branches to L1 go straight to T
+//                    (when b == c) or the fall-through path jumps to T (when a == c)
+//   CONSTANT_BRANCH  push a, push b, beq/bleq L  ->  b L, or nothing if the branch is never taken
+//   JUMP_TO_NEXT     b L, L:  ->  L:
+//   PUSH_POP         push x, pop  ->  nothing
+//   UNREACHABLE      instructions after b or halt and before the next label are dropped
+// Labels that are no longer referenced are dropped too, except the ones in "pinned" (the GC points
+// of the root maps) and the ones whose address is pushed (functions and methods).
+public class PeepholeOptimizer {
+
+    public enum Rule { BOOLEAN_TEST, CONSTANT_BRANCH, JUMP_TO_NEXT, PUSH_POP, UNREACHABLE }
+
+    private final Set<String> pinned;
+    private final Map<String, Integer> refs = new HashMap<>(); // branches to each label
+    private final Map<String, String> alias = new HashMap<>(); // labels removed in favour of another one
+    private final List<Code> out = new ArrayList<>();
+    private final int[] removed = new int[Rule.values().length];
+    private int before, after; // instructions, labels excluded
+
+    public PeepholeOptimizer(Collection<String> pinned) {
+        this.pinned = new HashSet<>(pinned);
+    }
+
+    public Code optimize(Code code) {
+        List<Code> in = code.instructions();
+        for (Code c : in)
+            if (!c.isLabel() && c.label != null) {
+                refs.merge(c.label, 1, Integer::sum);
+                if (c.opcode == Opcodes.PUSH) pinned.add(c.label);
+            }
+        for (Code c : in) {
+            if (c.isLabel()) {
+                if (!dead(c.label)) append(c);
+                continue;
+            }
+            before++;
+            if (unreachable()) {
+                unref(c);
+                removed[Rule.UNREACHABLE.ordinal()]++;
+            } else {
+                append(c);
+            }
+        }
+        // resolve the labels of removed definitions, drop the unused ones
+        List<Code> result = new ArrayList<>();
+        for (Code c : out) {
+            if (c.isLabel()) {
+                if (!dead(c.label)) result.add(c);
+                continue;
+            }
+            after++;
+            if (c.label != null && !find(c.label).equals(c.label)) c = c.withLabel(find(c.label));
+            result.add(c);
+        }
+        return nlJoin(result.toArray(new Code[0]));
+    }
+
+    private void append(Code c) {
+        out.add(c);
+        while (reduce()) ;
+    }
+
+    private boolean reduce() {
+        Code last = at(0);
+        if (last == null) return false;
+        if (last.isLabel()) { // JUMP_TO_NEXT
+            int k = 1;
+            while (at(k) != null && at(k).isLabel()) k++;
+            Code jump = at(k);
+            if (jump == null || jump.opcode != Opcodes.BRANCH) return false;
+            for (int i = 0; i < k; i++)
+                if (at(i).label.equals(find(jump.label))) {
+                    unref(jump);
+                    out.remove(out.size() - 1 - k);
+                    removed[Rule.JUMP_TO_NEXT.ordinal()]++;
+                    // the labels left without references go too, the window may match again
+                    for (int j = k - 1; j >= 0; j--)
+                        if (dead(at(j).label)) out.remove(out.size() - 1 - j);
+                    return true;
+                }
+            return false;
+        }
+        if (last.opcode == Opcodes.POP && isPush(at(1))) {
+            unref(at(1));
+            truncate(2);
+            removed[Rule.PUSH_POP.ordinal()] += 2;
+            return true;
+        }
+        if ((last.opcode == Opcodes.BRANCHEQ || last.opcode == Opcodes.BRANCHLESSEQ)
+                && isPushNumber(at(1)) && isPushNumber(at(2))) {
+            int a = at(2).value, b = at(1).value;
+            boolean taken = last.opcode == Opcodes.BRANCHEQ ? a == b : a <= b;
+            truncate(3);
+            if (taken) {
+                out.add(Code.b(last.label));
+                removed[Rule.CONSTANT_BRANCH.ordinal()] += 2;
+            } else {
+                unref(last);
+                removed[Rule.CONSTANT_BRANCH.ordinal()] += 3;
+            }
+            return true;
+        }
+        if (last.opcode == Opcodes.BRANCHEQ && isPushNumber(at(1)) && at(2) != null && at(2).isLabel()
+                && isPushNumber(at(3)) && at(4) != null && at(4).isLabel()
+                && at(5) != null && at(5).opcode == Opcodes.BRANCH && isPushNumber(at(6))) {
+            String l1 = at(4).label, l2 = at(2).label, target = last.label;
+            int a = at(6).value, b = at(3).value, c = at(1).value;
+            if (!find(at(5).label).equals(l2) || refs.getOrDefault(l2, 0) != 1 || pinned.contains(l2)
+                    || pinned.contains(l1) || a == b || find(target).equals(l1))
+                return false;
+            if (b != c && a != c) return false; // neither path branches: c is not a boolean (bool is a subtype of int)
+            truncate(7);
+            refs.remove(l2);
+            if (b == c) { // the branches to L1 go to the target, the fall-through path goes on
+                refs.merge(find(target), refs.getOrDefault(l1, 0), Integer::sum);
+                refs.remove(l1);
+                alias.put(l1, find(target));
+                removed[Rule.BOOLEAN_TEST.ordinal()] += 5;
+            } else { // a == c: the fall-through path goes to the target, the branches to L1 go on
+                out.add(Code.b(target));
+                if (!dead(l1)) out.add(Code.label(l1));
+                removed[Rule.BOOLEAN_TEST.ordinal()] += 4;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    // whether an instruction appended now would follow an unconditional jump or halt, with no live label between
+    private boolean unreachable() {
+        int k = 0;
+        while (at(k) != null && at(k).isLabel() && dead(at(k).label)) k++;
+        Code last = at(k);
+        return last != null && (last.opcode == Opcodes.BRANCH || last.opcode == Opcodes.HALT);
+    }
+
+    // unreferenced labels can be dropped: references are counted on the whole program in advance
+    // and the count of a label never grows from zero (an alias merges into a referenced label)
+    private boolean dead(String label) {
+        return refs.getOrDefault(label, 0) == 0 && !pinned.contains(label);
+    }
+
+    private Code at(int k) {
+        int i = out.size() - 1 - k;
+        return i >= 0 ? out.get(i) : null;
+    }
+
+    private void truncate(int n) {
+        out.subList(out.size() - n, out.size()).clear();
+    }
+
+    private static boolean isPush(Code c) {
+        return c != null && c.opcode == Opcodes.PUSH;
+    }
+
+    private static boolean isPushNumber(Code c) {
+        return isPush(c) && c.label == null;
+    }
+
+    private void unref(Code c) {
+        if (c.label != null) refs.merge(find(c.label), -1, Integer::sum);
+    }
+
+    private String find(String label) {
+        String l = label;
+        while (alias.containsKey(l)) l = alias.get(l);
+        return l;
+    }
+
+    public int removed(Rule rule) {
+        return removed[rule.ordinal()];
+    }
+
+    public String report() {
+        var sb = new StringBuilder(String.format("Peephole optimizer: %d instructions, %d removed%n", before, before - after));
+        for (Rule r : Rule.values())
+            if (removed[r.ordinal()] > 0) sb.append(String.format("  %-16s %6d%n", r, removed[r.ordinal()]));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,238 @@
+package compiler;
+
+import compiler.AST.*;
+import compiler.exc.VoidException;
+import compiler.lib.BaseEASTVisitor;
+import compiler.lib.DecNode;
+import compiler.lib.Node;
+import compiler.lib.Visitable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Base of the AST-to-AST passes on the enriched AST (see ConstantFoldingEASTVisitor, InliningEASTVisitor).
+// visitNode(n) returns the node that replaces n: by default a copy of n, with the same symbol table
+// links, whose children are the results of their own visit; leaves are returned as they are.
+// Subclasses override the nodes they rewrite.
+public class RewritingEASTVisitor extends BaseEASTVisitor<Node, VoidException> {
+
+    protected int nodes; // visited
+
+    RewritingEASTVisitor() {
+    }
+
+    RewritingEASTVisitor(boolean debug) {
+        super(false, debug);
+    } // enables print for debugging
+
+    @Override
+    public Node visit(Visitable v, String mark) {
+        if (v != null) nodes++;
+        return super.visit(v, mark);
+    }
+
+    // number of nodes of a (sub)tree
+    static int size(Node n) {
+        var counter = new RewritingEASTVisitor();
+        counter.visit(n);
+        return counter.nodes;
+    }
+
+    protected static <T extends Node> T at(T n, Node old) {
+        n.setLine(old.getLine());
+        return n;
+    }
+
+    protected List<Node> visitList(List<? extends Node> list) {
+        List<Node> result = new ArrayList<>();
+        for (Node n : list) result.add(visit(n));
+        return result;
+    }
+
+    protected List<DecNode> visitDecs(List<DecNode> list) {
+        List<DecNode> result = new ArrayList<>();
+        for (DecNode d : list) result.add((DecNode) visit(d));
+        return result;
+    }
+
+    @Override
+    public Node visitNode(ProgLetInNode n) {
+        if (print) printNode(n);
+        List<DecNode> declist = visitDecs(n.declist);
+        ProgLetInNode p = at(new ProgLetInNode(declist, visit(n.exp)), n);
+        p.displaySize = n.displaySize;
+        return p;
+    }
+
+    @Override
+    public Node visitNode(ProgNode n) {
+        if (print) printNode(n);
+        return at(new ProgNode(visit(n.exp)), n);
+    }
+
+    @Override
+    public Node visitNode(FunNode n) {
+        if (print) printNode(n, n.id);
+        List<DecNode> declist = visitDecs(n.declist);
+        FunNode f = at(new FunNode(n.id, n.retType, n.parlist, declist, visit(n.exp)), n);
+        f.setType(n.getType());
+        f.entry = n.entry;
+        f.display = n.display;
+        return f;
+    }
+
+    @Override
+    public Node visitNode(VarNode n) {
+        if (print) printNode(n, n.id);
+        VarNode v = at(new VarNode(n.id, n.getType(), visit(n.exp)), n);
+        v.entry = n.entry;
+        return v;
+    }
+
+    @Override
+    public Node visitNode(PrintNode n) {
+        if (print) printNode(n);
+        return at(new PrintNode(visit(n.exp)), n);
+    }
+
+    @Override
+    public Node visitNode(IfNode n) {
+        if (print) printNode(n);
+        return at(new IfNode(visit(n.cond), visit(n.th), visit(n.el)), n);
+    }
+
+    @Override
+    public Node visitNode(EqualNode n) {
+        if (print) printNode(n);
+        return at(new EqualNode(visit(n.left), visit(n.right)), n);
+    }
+
+    @Override
+    public Node visitNode(GreaterEqualNode n) {
+        if (print) printNode(n);
+        return at(new GreaterEqualNode(visit(n.left), visit(n.right)), n);
+    }
+
+    @Override
+    public Node visitNode(LessEqualNode n) {
+        if (print) printNode(n);
+        return at(new LessEqualNode(visit(n.left), visit(n.right)), n);
+    }
+
+    @Override
+    public Node visitNode(PlusNode n) {
+        if (print) printNode(n);
+        return at(new PlusNode(visit(n.left), visit(n.right)), n);
+    }
+
+    @Override
+    public Node visitNode(MinusNode n) {
+        if (print) printNode(n);
+        return at(new MinusNode(visit(n.left), visit(n.right)), n);
+    }
+
+    @Override
+    public Node visitNode(TimesNode n) {
+        if (print) printNode(n);
+        return at(new TimesNode(visit(n.left), visit(n.right)), n);
+    }
+
+    @Override
+    public Node visitNode(DivNode n) {
+        if (print) printNode(n);
+        return at(new DivNode(visit(n.left), visit(n.right)), n);
+    }
+
+    @Override
+    public Node visitNode(NotNode n) {
+        if (print) printNode(n);
+        return at(new NotNode(visit(n.exp)), n);
+    }
+
+    @Override
+    public Node visitNode(AndNode n) {
+        if (print) printNode(n);
+        return at(new AndNode(visit(n.left), visit(n.right)), n);
+    }
+
+    @Override
+    public Node visitNode(OrNode n) {
+        if (print) printNode(n);
+        return at(new OrNode(visit(n.left), visit(n.right)), n);
+    }
+
+    @Override
+    public Node visitNode(IdNode n) {
+        if (print) printNode(n, n.id);
+        return n;
+    }
+
+    @Override
+    public Node visitNode(BoolNode n) {
+        if (print) printNode(n, n.val.toString());
+        return n;
+    }
+
+    @Override
+    public Node visitNode(IntNode n) {
+        if (print) printNode(n, n.val.toString());
+        return n;
+    }
+
+    @Override
+    public Node visitNode(EmptyNode n) {
+        if (print) printNode(n);
+        return n;
+    }
+
+    @Override
+    public Node visitNode(CallNode n) {
+        if (print) printNode(n, n.id);
+        CallNode c = at(new CallNode(n.id, visitList(n.arglist)), n);
+        c.entry = n.entry;
+        c.nl = n.nl;
+        return c;
+    }
+
+    @Override
+    public Node visitNode(ClassNode n) {
+        if (print) printNode(n, n.id);
+        List<MethodNode> methods = new ArrayList<>();
+        for (MethodNode m : n.methodList) methods.add((MethodNode) visit(m));
+        ClassNode c = at(new ClassNode(n.id, n.superId, n.fieldList, methods), n);
+        c.type = n.type;
+        c.superEntry = n.superEntry;
+        return c;
+    }
+
+    @Override
+    public Node visitNode(MethodNode n) {
+        if (print) printNode(n, n.id);
+        List<DecNode> declist = visitDecs(n.declist);
+        MethodNode m = at(new MethodNode(n.id, n.retType, n.parlist, declist, visit(n.exp)), n);
+        m.setType((MethodTypeNode) n.getType());
+        m.offset = n.offset;
+        m.entry = n.entry;
+        m.display = n.display;
+        return m;
+    }
+
+    @Override
+    public Node visitNode(ClassCallNode n) {
+        if (print) printNode(n, n.objectId + "." + n.methodId);
+        ClassCallNode c = at(new ClassCallNode(n.objectId, n.methodId, visitList(n.arglist)), n);
+        c.entry = n.entry;
+        c.methodEntry = n.methodEntry;
+        c.nl = n.nl;
+        c.direct = n.direct;
+        return c;
+    }
+
+    @Override
+    public Node visitNode(NewNode n) {
+        if (print) printNode(n, n.id);
+        NewNode c = at(new NewNode(n.id, visitList(n.arglist)), n);
+        c.entry = n.entry;
+        return c;
+    }
+}
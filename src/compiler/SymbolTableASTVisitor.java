@@ -3,6 +3,7 @@ package compiler;
 import compiler.AST.*;
 import compiler.exc.VoidException;
 import compiler.lib.BaseASTVisitor;
+import compiler.lib.DecNode;
 import compiler.lib.Node;
 import compiler.lib.TypeNode;
 
@@ -17,12 +18,15 @@ public class SymbolTableASTVisitor extends BaseASTVisitor<Void, VoidException> {
     private int nestingLevel = 0; // current nesting level
     private int decOffset = -2; // counter for offset of local declarations at current nesting level
     int stErrors = 0;
+    private final TypeTable types;
 
-    SymbolTableASTVisitor() {
+    SymbolTableASTVisitor(TypeTable types) {
+        this.types = types;
     }
 
-    SymbolTableASTVisitor(boolean debug) {
+    SymbolTableASTVisitor(TypeTable types, boolean debug) {
         super(debug, true);
+        this.types = types;
     } // enables print for debugging
 
     private STentry stLookup(String id) {
@@ -38,6 +42,8 @@ public class SymbolTableASTVisitor extends BaseASTVisitor<Void, VoidException> {
         if (print) printNode(n);
         Map<String, STentry> hm = new HashMap<>();
         symTable.add(hm);
+        n.displaySize = displayLevels(n.declist, 0);
+        decOffset = -2 - n.displaySize; // the display comes first in the global frame
         for (Node dec : n.declist) visit(dec);
         visit(n.exp);
         symTable.remove(0);
@@ -51,27 +57,52 @@ public class SymbolTableASTVisitor extends BaseASTVisitor<Void, VoidException> {
         return null;
     }
 
+    // A frame is reached through the display (see CodeGenerationASTVisitor.frameAt) if the code of a function
+    // nested in it at least two levels deep accesses it: its own functions reach it by their Access Link
+    private static boolean nestedTwice(List<DecNode> declist) {
+        for (DecNode dec : declist)
+            if (dec instanceof FunNode f)
+                for (DecNode inner : f.declist)
+                    if (inner instanceof FunNode) return true;
+        return false;
+    }
+
+    // highest nesting level of a frame in the display, among the functions (and methods) declared at a level
+    private static int displayLevels(List<DecNode> declist, int level) {
+        int max = 0;
+        for (DecNode dec : declist) {
+            if (dec instanceof FunNode f)
+                max = Math.max(max, Math.max(nestedTwice(f.declist) ? level + 1 : 0, displayLevels(f.declist, level + 1)));
+            if (dec instanceof ClassNode c)
+                for (MethodNode m : c.methodList) // method bodies are at level 2
+                    max = Math.max(max, Math.max(nestedTwice(m.declist) ? 2 : 0, displayLevels(m.declist, 2)));
+        }
+        return max;
+    }
+
     @Override
     public Void visitNode(FunNode n) {
         if (print) printNode(n);
         Map<String, STentry> hm = symTable.get(nestingLevel);
         List<TypeNode> parTypes = new ArrayList<>();
         for (ParNode par : n.parlist) parTypes.add(par.getType());
-        STentry entry = new STentry(nestingLevel, new ArrowTypeNode(parTypes, n.retType), decOffset--);
+        STentry entry = new STentry(nestingLevel, types.arrow(parTypes, n.retType), decOffset--);
+        n.entry = entry;
         //inserimento di ID nella symtable
         if (hm.put(n.id, entry) != null) {
             System.out.println("Fun id " + n.id + " at line " + n.getLine() + " already declared");
             stErrors++;
         }
 
-        n.setType(new ArrowTypeNode(parTypes, n.retType));
+        n.setType(types.arrow(parTypes, n.retType));
 
         //creare una nuova hashmap per la symTable
         nestingLevel++;
         Map<String, STentry> hmn = new HashMap<>();
         symTable.add(hmn);
         int prevNLDecOffset = decOffset; // stores counter for offset of declarations at previous nesting level
-        decOffset = -2;
+        n.display = nestedTwice(n.declist);
+        decOffset = n.display ? -3 : -2; // the previous display entry is saved at -2
 
         int parOffset = 1;
         for (ParNode par : n.parlist)
@@ -93,6 +124,7 @@ public class SymbolTableASTVisitor extends BaseASTVisitor<Void, VoidException> {
         visit(n.exp);
         Map<String, STentry> hm = symTable.get(nestingLevel);
         STentry entry = new STentry(nestingLevel, n.getType(), decOffset--);
+        n.entry = entry;
         //inserimento di ID nella symtable
         if (hm.put(n.id, entry) != null) {
             System.out.println("Var id " + n.id + " at line " + n.getLine() + " already declared");
@@ -351,6 +383,7 @@ public class SymbolTableASTVisitor extends BaseASTVisitor<Void, VoidException> {
                         var prevOffset = virtualTable.get(method.id).offset;
                         var entry = new STentry(nestingLevel, method.getType(), prevOffset);
                         method.offset = prevOffset;
+                        method.entry = entry;
                         virtualTable.put(method.id, entry);
                         // preserve the offset, put the new method in the class type
                         classType.allMethods.set(prevOffset, ((MethodTypeNode) method.getType()).fun);
@@ -364,6 +397,7 @@ public class SymbolTableASTVisitor extends BaseASTVisitor<Void, VoidException> {
                     var entry = new STentry(nestingLevel, method.getType(), decOffset);
                     virtualTable.put(method.id, entry);
                     method.offset = decOffset;
+                    method.entry = entry;
                     decOffset++; // increment the offset because the last method is at the top of the heap
                     classType.allMethods.add(((MethodTypeNode) method.getType()).fun);
                 }
@@ -386,7 +420,7 @@ public class SymbolTableASTVisitor extends BaseASTVisitor<Void, VoidException> {
         var parTypes = new ArrayList<TypeNode>();
         for (var par : n.parlist) parTypes.add(par.getType());
         // Set method type
-        var methodType = new MethodTypeNode(new ArrowTypeNode(parTypes, n.retType));
+        var methodType = types.method(types.arrow(parTypes, n.retType));
         n.setType(methodType);
 
         // Enter the method scope
@@ -395,6 +429,8 @@ public class SymbolTableASTVisitor extends BaseASTVisitor<Void, VoidException> {
         var hmn = new HashMap<String, STentry>();
         symTable.add(hmn);
         var prevNLDecOffset = decOffset; // store counter for offset of declarations at current nesting level
+        n.display = nestedTwice(n.declist);
+        decOffset = n.display ? -3 : -2; // local declarations start below the return address, as in functions
         var parOffset = 1;
         // Check if parameters are already declared
         for (var par : n.parlist) {
@@ -1,81 +1,59 @@
 package compiler;
 
 import java.io.*;
+import java.nio.file.Path;
+import java.util.Map;
 import org.antlr.v4.runtime.*;
-import org.antlr.v4.runtime.tree.*;
-import compiler.lib.*;
-import compiler.exc.*;
 import svm.*;
 
 public class Test {
 	public static void main(String[] args) throws Exception {
 
+		// usage: java compiler.Test [-asm] [-O<level>] [-inline <budget>] [-cache <directory>] [fileName.fool]
+		// with -asm the generated code is also written as assembly text to fileName.fool.asm;
+		// with -cache the compilation is incremental: the declarations type checked before, by compilations
+		// with the same cache directory, are not checked again (see IncrementalCache);
+		// optimizations are enabled at levels above 0 (the default is 1);
+		// functions are inlined if their body grows the code by at most budget AST nodes (0 disables inlining)
+		boolean asmOutput = false;
+		int optLevel = 1;
+		int inlineBudget = 12;
+		IncrementalCache cache = null;
 		String fileName = "bankloan.fool";
+		for (int i = 0; i < args.length; i++)
+			if (args[i].equals("-asm")) asmOutput = true;
+			else if (args[i].startsWith("-O")) optLevel = Integer.parseInt(args[i].substring(2));
+			else if (args[i].equals("-inline")) inlineBudget = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-cache")) cache = new IncrementalCache(Path.of(args[++i]));
+			else fileName = args[i];
 
 		CharStream chars = CharStreams.fromFileName(fileName);
-		FOOLLexer lexer = new FOOLLexer(chars);
-		CommonTokenStream tokens = new CommonTokenStream(lexer);
-		FOOLParser parser = new FOOLParser(tokens);
-
-		System.out.println("Generating ST via lexer and parser.");
-		ParseTree st = parser.prog();
-		System.out.println("You had "+lexer.lexicalErrors+" lexical errors and "+
-				parser.getNumberOfSyntaxErrors()+" syntax errors.\n");
-
-		System.out.println("Generating AST.");
-		ASTGenerationSTVisitor visitor = new ASTGenerationSTVisitor(); // use true to visualize the ST
-		Node ast = visitor.visit(st);
-		System.out.println();
-
-		System.out.println("Enriching AST via symbol table.");
-		SymbolTableASTVisitor symtableVisitor = new SymbolTableASTVisitor();
-		symtableVisitor.visit(ast);
-		System.out.println("You had "+symtableVisitor.stErrors+" symbol table errors.\n");
-
-		System.out.println("Visualizing Enriched AST.");
-		new PrintEASTVisitor().visit(ast);
-		System.out.println();
-
-		System.out.println("Checking Types.");
-		try {
-			TypeCheckEASTVisitor typeCheckVisitor = new TypeCheckEASTVisitor();
-			TypeNode mainType = typeCheckVisitor.visit(ast);
-			System.out.print("Type of main program expression is: ");
-			new PrintEASTVisitor().visit(mainType);
-		} catch (IncomplException e) {
-			System.out.println("Could not determine main program expression type due to errors detected before type checking.");
-		} catch (TypeException e) {
-			System.out.println("Type checking error in main program expression: "+e.text);
+		Compilation compilation = new Compilation(System.out);
+		compilation.optLevel = optLevel;
+		compilation.inlineBudget = inlineBudget;
+		compilation.printAST = true;
+		compilation.cache = cache;
+		Compilation.Result result = compilation.compile(chars);
+		if (cache != null) System.out.println(cache.report());
+		if (result == null) System.exit(1);
+
+		Assembler asm = result.asm();
+		Map<Integer, RootMap> rootMaps = result.rootMaps();
+		if (asmOutput) { // assembly text, for debugging only
+			BufferedWriter out = new BufferedWriter(new FileWriter(fileName+".asm"));
+			out.write(result.code().text());
+			out.close();
 		}
-		System.out.println("You had "+FOOLlib.typeErrors+" type checking errors.\n");
-
-		int frontEndErrors = lexer.lexicalErrors+parser.getNumberOfSyntaxErrors()+symtableVisitor.stErrors+FOOLlib.typeErrors;
-		System.out.println("You had a total of "+frontEndErrors+" front-end errors.\n");
-
-		if ( frontEndErrors > 0) System.exit(1);
-
-		System.out.println("Generating code.");
-		String code = new CodeGenerationASTVisitor().visit(ast);
-		BufferedWriter out = new BufferedWriter(new FileWriter(fileName+".asm"));
-		out.write(code);
-		out.close();
-		System.out.println();
-
-		System.out.println("Assembling generated code.");
-		CharStream charsASM = CharStreams.fromFileName(fileName+".asm");
-		SVMLexer lexerASM = new SVMLexer(charsASM);
-		CommonTokenStream tokensASM = new CommonTokenStream(lexerASM);
-		SVMParser parserASM = new SVMParser(tokensASM);
 
-		parserASM.assembly();
+		// binary object file: can be run later by "java svm.ExecuteVM fileName.svmo" without re-assembling
+		ObjectFile.write(Path.of(fileName+".svmo"), asm.code(), asm.length(), asm.labels(), rootMaps);
 
-		// needed only for debug
-		System.out.println("You had: "+lexerASM.lexicalErrors+" lexical errors and "+parserASM.getNumberOfSyntaxErrors()+" syntax errors.\n");
-		if (lexerASM.lexicalErrors+parserASM.getNumberOfSyntaxErrors()>0) System.exit(1);
+		System.out.println("Fused "+Superinstructions.fuse(asm.code(), asm.length(), asm.labels().values())+" superinstructions.\n");
 
 		System.out.println("Running generated code via Stack Virtual Machine.");
-		ExecuteVM vm = new ExecuteVM(parserASM.code);
+		ExecuteVM vm = new ExecuteVM(asm.code(), rootMaps);
 		vm.cpu();
+		System.out.println(vm.gcReport());
 
 	}
 }
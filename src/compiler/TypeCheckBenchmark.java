@@ -0,0 +1,57 @@
+package compiler;
+
+import compiler.lib.Node;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.tree.ParseTree;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+
+// Time and allocation of the type checking of programs: each program is parsed once, then its AST is
+// built, enriched by the symbol table and type checked "runs" times after as many warm-up runs, each time
+// in a new CompilationContext. Only the type checking is measured: the best time and the bytes allocated
+// by it (as counted by the JVM for the thread), which do not depend on the run.
+//
+// Usage: java compiler.TypeCheckBenchmark [-runs r] file.fool...
+public class TypeCheckBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int runs = 10, first = 0;
+        if (args.length > 1 && args[0].equals("-runs")) {
+            runs = Integer.parseInt(args[1]);
+            first = 2;
+        }
+        if (first >= args.length) {
+            System.out.println("Usage: java compiler.TypeCheckBenchmark [-runs r] file.fool...");
+            System.exit(1);
+        }
+
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        System.out.println("program                        best ms  allocated KB  MB/s");
+        for (int i = first; i < args.length; i++) {
+            var parser = new FOOLParser(new CommonTokenStream(new FOOLLexer(CharStreams.fromPath(Path.of(args[i])))));
+            ParseTree st = Compilation.parse(parser);
+            long best = Long.MAX_VALUE, allocated = 0;
+            for (int r = 0; r < 2 * runs; r++) {
+                var context = new CompilationContext();
+                Node ast = new ASTGenerationSTVisitor(context.types).visit(st);
+                var symtableVisitor = new SymbolTableASTVisitor(context.types);
+                symtableVisitor.visit(ast);
+                if (symtableVisitor.stErrors > 0) throw new IllegalStateException("Symbol table errors in " + args[i]);
+                var typeCheckVisitor = new TypeCheckEASTVisitor(context);
+                long bytes = threads.getCurrentThreadAllocatedBytes(), start = System.nanoTime();
+                typeCheckVisitor.visit(ast);
+                long time = System.nanoTime() - start;
+                bytes = threads.getCurrentThreadAllocatedBytes() - bytes;
+                if (context.typeErrors > 0) throw new IllegalStateException("Type errors in " + args[i]);
+                if (r >= runs) {
+                    best = Math.min(best, time);
+                    allocated = bytes;
+                }
+            }
+            System.out.printf("%-30s %7.2f %13d %5.0f%n", Path.of(args[i]).getFileName(), best / 1e6, allocated / 1024,
+                    allocated / 1048576.0 / (best / 1e9));
+        }
+    }
+}
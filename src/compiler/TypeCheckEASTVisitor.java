@@ -7,8 +7,6 @@ import compiler.lib.BaseEASTVisitor;
 import compiler.lib.Node;
 import compiler.lib.TypeNode;
 
-import static compiler.TypeRels.*;
-
 //visitNode(n) fa il type checking di un Node n e ritorna:
 //- per una espressione, il suo tipo (oggetto BoolTypeNode o IntTypeNode)
 //- per una dichiarazione, "null"; controlla la correttezza interna della dichiarazione
@@ -17,12 +15,19 @@ import static compiler.TypeRels.*;
 //visitSTentry(s) ritorna, per una STentry s, il tipo contenuto al suo interno
 public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode, TypeException> {
 
-    TypeCheckEASTVisitor() {
+    private final CompilationContext context;
+    private final TypeRels rels;
+
+    TypeCheckEASTVisitor(CompilationContext context) {
         super(true);
+        this.context = context;
+        this.rels = context.typeRels;
     } // enables incomplete tree exceptions
 
-    TypeCheckEASTVisitor(boolean debug) {
+    TypeCheckEASTVisitor(CompilationContext context, boolean debug) {
         super(true, debug);
+        this.context = context;
+        this.rels = context.typeRels;
     } // enables print for debugging
 
     //checks that a type object is visitable (not incomplete)
@@ -34,14 +39,22 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode, TypeExceptio
     @Override
     public TypeNode visitNode(ProgLetInNode n) throws TypeException {
         if (print) printNode(n);
-        for (Node dec : n.declist)
+        rels.freeze(n.declist); // the class hierarchy, as built by the symbol table
+        IncrementalCache cache = context.cache != null && context.cache.enabled(n.declist.size()) ? context.cache : null;
+        for (int i = 0; i < n.declist.size(); i++) {
+            Node dec = n.declist.get(i);
+            if (cache != null && cache.typeChecked(i)) continue; // already checked, with the same declarations it uses
+            int errors = context.typeErrors;
             try {
                 visit(dec);
+                if (cache != null && context.typeErrors == errors) cache.recordTypeChecked(i);
             } catch (IncomplException e) {
                 System.out.println("Incomplete declaration at line " + dec.getLine());
             } catch (TypeException e) {
+                context.typeErrors++;
                 System.out.println("Type checking error in a declaration: " + e.text);
             }
+        }
         return visit(n.exp);
     }
 
@@ -60,9 +73,10 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode, TypeExceptio
             } catch (IncomplException e) {
                 System.out.println("Incomplete declaration at line " + dec.getLine());
             } catch (TypeException e) {
+                context.typeErrors++;
                 System.out.println("Type checking error in a declaration: " + e.text);
             }
-        if (!isSubtype(visit(n.exp), ckvisit(n.retType)))
+        if (!rels.isSubtype(visit(n.exp), ckvisit(n.retType)))
             throw new TypeException("Wrong return type for function " + n.id, n.getLine());
         return null;
     }
@@ -70,7 +84,7 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode, TypeExceptio
     @Override
     public TypeNode visitNode(VarNode n) throws TypeException {
         if (print) printNode(n, n.id);
-        if (!isSubtype(visit(n.exp), ckvisit(n.getType())))
+        if (!rels.isSubtype(visit(n.exp), ckvisit(n.getType())))
             throw new TypeException("Incompatible value for variable " + n.id, n.getLine());
         return null;
     }
@@ -84,7 +98,7 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode, TypeExceptio
     @Override
     public TypeNode visitNode(IfNode n) throws TypeException {
         if (print) printNode(n);
-        if (!(isSubtype(visit(n.cond), new BoolTypeNode())))
+        if (!(rels.isSubtype(visit(n.cond), BoolTypeNode.INSTANCE)))
             throw new TypeException("Non boolean condition in if", n.getLine());
         TypeNode t = visit(n.th);
         TypeNode e = visit(n.el);
@@ -93,7 +107,7 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode, TypeExceptio
 //        if (isSubtype(e, t)) return t;
 //        throw new TypeException("Incompatible types in then-else branches", n.getLine());
         // new code
-        var lca = getLowestCommonAncestor(t, e);
+        var lca = rels.getLowestCommonAncestor(t, e);
         if (lca == null) {
             throw new TypeException("Incompatible types in then-else branches", n.getLine());
         } else {
@@ -106,24 +120,24 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode, TypeExceptio
         if (print) printNode(n);
         TypeNode l = visit(n.left);
         TypeNode r = visit(n.right);
-        if (!(isSubtype(l, r) || isSubtype(r, l))) throw new TypeException("Incompatible types in equal", n.getLine());
-        return new BoolTypeNode();
+        if (!(rels.isSubtype(l, r) || rels.isSubtype(r, l))) throw new TypeException("Incompatible types in equal", n.getLine());
+        return BoolTypeNode.INSTANCE;
     }
 
     @Override
     public TypeNode visitNode(TimesNode n) throws TypeException {
         if (print) printNode(n);
-        if (!(isSubtype(visit(n.left), new IntTypeNode()) && isSubtype(visit(n.right), new IntTypeNode())))
+        if (!(rels.isSubtype(visit(n.left), IntTypeNode.INSTANCE) && rels.isSubtype(visit(n.right), IntTypeNode.INSTANCE)))
             throw new TypeException("Non integers in multiplication", n.getLine());
-        return new IntTypeNode();
+        return IntTypeNode.INSTANCE;
     }
 
     @Override
     public TypeNode visitNode(PlusNode n) throws TypeException {
         if (print) printNode(n);
-        if (!(isSubtype(visit(n.left), new IntTypeNode()) && isSubtype(visit(n.right), new IntTypeNode())))
+        if (!(rels.isSubtype(visit(n.left), IntTypeNode.INSTANCE) && rels.isSubtype(visit(n.right), IntTypeNode.INSTANCE)))
             throw new TypeException("Non integers in sum", n.getLine());
-        return new IntTypeNode();
+        return IntTypeNode.INSTANCE;
     }
 
     @Override
@@ -138,7 +152,7 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode, TypeExceptio
         if (!(fun.parlist.size() == n.arglist.size()))
             throw new TypeException("Wrong number of parameters in the invocation of " + n.id, n.getLine());
         for (int i = 0; i < n.arglist.size(); i++)
-            if (!(isSubtype(visit(n.arglist.get(i)), fun.parlist.get(i))))
+            if (!(rels.isSubtype(visit(n.arglist.get(i)), fun.parlist.get(i))))
                 throw new TypeException("Wrong type for " + (i + 1) + "-th parameter in the invocation of " + n.id, n.getLine());
         return fun.ret;
     }
@@ -158,13 +172,13 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode, TypeExceptio
     @Override
     public TypeNode visitNode(BoolNode n) {
         if (print) printNode(n, n.val.toString());
-        return new BoolTypeNode();
+        return BoolTypeNode.INSTANCE;
     }
 
     @Override
     public TypeNode visitNode(IntNode n) {
         if (print) printNode(n, n.val.toString());
-        return new IntTypeNode();
+        return IntTypeNode.INSTANCE;
     }
 
 // gestione tipi incompleti	(se lo sono lancia eccezione)
@@ -201,17 +215,17 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode, TypeExceptio
     @Override
     public TypeNode visitNode(MinusNode n) throws TypeException {
         if (print) printNode(n);
-        if (!isSubtype(visit(n.left), new IntTypeNode()) || !isSubtype(visit(n.right), new IntTypeNode()))
+        if (!rels.isSubtype(visit(n.left), IntTypeNode.INSTANCE) || !rels.isSubtype(visit(n.right), IntTypeNode.INSTANCE))
             throw new TypeException("Non integers in subtraction", n.getLine());
-        return new IntTypeNode();
+        return IntTypeNode.INSTANCE;
     }
 
     @Override
     public TypeNode visitNode(DivNode n) throws TypeException {
         if (print) printNode(n);
-        if (!isSubtype(visit(n.left), new IntTypeNode()) || !isSubtype(visit(n.right), new IntTypeNode()))
+        if (!rels.isSubtype(visit(n.left), IntTypeNode.INSTANCE) || !rels.isSubtype(visit(n.right), IntTypeNode.INSTANCE))
             throw new TypeException("Non integers in division", n.getLine());
-        return super.visitNode(n);
+        return IntTypeNode.INSTANCE;
     }
 
     @Override
@@ -219,9 +233,9 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode, TypeExceptio
         if (print) printNode(n);
         TypeNode l = visit(n.left);
         TypeNode r = visit(n.right);
-        if (!isSubtype(l, r) || !isSubtype(r, l))
+        if (!rels.isSubtype(l, r) || !rels.isSubtype(r, l))
             throw new TypeException("Incompatible types in greater equal", n.getLine());
-        return new BoolTypeNode();
+        return BoolTypeNode.INSTANCE;
     }
 
     @Override
@@ -229,32 +243,32 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode, TypeExceptio
         if (print) printNode(n);
         TypeNode l = visit(n.left);
         TypeNode r = visit(n.right);
-        if (!isSubtype(l, r) || !isSubtype(r, l))
+        if (!rels.isSubtype(l, r) || !rels.isSubtype(r, l))
             throw new TypeException("Incompatible types in less equal", n.getLine());
-        return new BoolTypeNode();
+        return BoolTypeNode.INSTANCE;
     }
 
     @Override
     public TypeNode visitNode(NotNode n) throws TypeException {
         if (print) printNode(n);
-        if (!isSubtype(visit(n.exp), new BoolTypeNode())) throw new TypeException("Non boolean in not", n.getLine());
-        return new BoolTypeNode();
+        if (!rels.isSubtype(visit(n.exp), BoolTypeNode.INSTANCE)) throw new TypeException("Non boolean in not", n.getLine());
+        return BoolTypeNode.INSTANCE;
     }
 
     @Override
     public TypeNode visitNode(OrNode n) throws TypeException {
         if (print) printNode(n);
-        if (!isSubtype(visit(n.left), new BoolTypeNode()) || !isSubtype(visit(n.right), new BoolTypeNode()))
+        if (!rels.isSubtype(visit(n.left), BoolTypeNode.INSTANCE) || !rels.isSubtype(visit(n.right), BoolTypeNode.INSTANCE))
             throw new TypeException("Non boolean in or", n.getLine());
-        return new BoolTypeNode();
+        return BoolTypeNode.INSTANCE;
     }
 
     @Override
     public TypeNode visitNode(AndNode n) throws TypeException {
         if (print) printNode(n);
-        if (!isSubtype(visit(n.left), new BoolTypeNode()) || !isSubtype(visit(n.right), new BoolTypeNode()))
+        if (!rels.isSubtype(visit(n.left), BoolTypeNode.INSTANCE) || !rels.isSubtype(visit(n.right), BoolTypeNode.INSTANCE))
             throw new TypeException("Non boolean in and", n.getLine());
-        return new BoolTypeNode();
+        return BoolTypeNode.INSTANCE;
     }
 
     // OOP EXTENSION
@@ -268,8 +282,6 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode, TypeExceptio
             for (var m : n.methodList) visit(m);
         } else {
             // Superclass.
-            superType.put(n.id, n.superId); // Update the superType map with the superclass of this class.
-
             var classType = n.type;
             var parentClassType = (ClassTypeNode) n.superEntry.type; // ParentCT in slide 49.
 
@@ -280,7 +292,7 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode, TypeExceptio
                 if (pos < parentClassType.allFields.size()) {
                     // The field is already present in the superclass. Check if it is compatible. (It must be a subtype of the superclass field.)
                     // Control done here only for optimization purposes.
-                    if (!isSubtype(classType.allFields.get(pos), parentClassType.allFields.get(pos))) {
+                    if (!rels.isSubtype(classType.allFields.get(pos), parentClassType.allFields.get(pos))) {
                         throw new TypeException("Field " + field.id + " has type " + field.getType() + " but it should be " + parentClassType.allFields.get(pos), n.getLine());
                     }
                 }
@@ -292,7 +304,7 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode, TypeExceptio
                 if (pos < parentClassType.allMethods.size()) {
                     // The method is already present in the superclass. Check if the signatures are compatible. (They must be equal.)
                     // Control done here only for optimization purposes.
-                    if (!isSubtype(classType.allMethods.get(pos), parentClassType.allMethods.get(pos))) {
+                    if (!rels.isSubtype(classType.allMethods.get(pos), parentClassType.allMethods.get(pos))) {
                         throw new TypeException("Method " + method.id + " has type " + method.getType() + " but it should be " + parentClassType.allMethods.get(pos), n.getLine());
                     }
                 }
@@ -311,9 +323,10 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode, TypeExceptio
             } catch (IncomplException e) {
                 System.out.println("Incomplete declaration at line " + dec.getLine());
             } catch (TypeException e) {
+                context.typeErrors++;
                 System.out.println("Type checking error in a declaration: " + e.text);
             }
-        if (!isSubtype(visit(n.exp), ckvisit(n.retType)))
+        if (!rels.isSubtype(visit(n.exp), ckvisit(n.retType)))
             throw new TypeException("Wrong return type in method " + n.id, n.getLine());
         return null;
     }
@@ -330,7 +343,7 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode, TypeExceptio
         if (!(fun.parlist.size() == node.arglist.size()))
             throw new TypeException("Wrong number of parameters in the invocation of " + node.objectId + "." + node.methodId, node.getLine());
         for (int i = 0; i < node.arglist.size(); i++)
-            if (!(isSubtype(visit(node.arglist.get(i)), fun.parlist.get(i))))
+            if (!(rels.isSubtype(visit(node.arglist.get(i)), fun.parlist.get(i))))
                 throw new TypeException("Wrong type for " + (i + 1) + "-th parameter in the invocation of " + node.objectId + "." + node.methodId, node.getLine());
         return fun.ret;
     }
@@ -347,17 +360,17 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode, TypeExceptio
 
         // Check if the parameters are of the right type.
         for (int i = 0; i < n.arglist.size(); i++) {
-            if (!isSubtype(visit(n.arglist.get(i)), classType.allFields.get(i)))
+            if (!rels.isSubtype(visit(n.arglist.get(i)), classType.allFields.get(i)))
                 throw new TypeException("Wrong type for " + (i + 1) + "-th parameter in the invocation of " + n.id, n.getLine());
         }
 
-        return new RefTypeNode(n.id);
+        return context.types.ref(n.id);
     }
 
     @Override
     public TypeNode visitNode(EmptyNode n) throws TypeException {
         if (print) printNode(n);
-        return new EmptyTypeNode();
+        return EmptyTypeNode.INSTANCE;
     }
 
     @Override
@@ -1,27 +1,92 @@
 package compiler;
 
 import compiler.AST.*;
+import compiler.lib.Node;
 import compiler.lib.TypeNode;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+// Subtyping relation of the program being compiled, one per compilation (see CompilationContext).
+// The class hierarchy is fixed by freeze, after the symbol table, and numbered: each class has the preorder
+// number of its node in the inheritance forest and the size of its subtree, so that a class is a subclass of
+// another iff its number falls in the interval of the other (O(1)); up[k][c] is the 2^k-th superclass of c,
+// -1 above the root, and the LCA climbs by halving jumps (O(log depth)).
+// Types are canonical (see TypeTable): equal types are the same object.
 public class TypeRels {
 
-    // map from class ID to superclass ID, it defines the inheritance relation of RefTypeNodes. Slide 30
-    public static Map<String, String> superType = new HashMap<>(); // to update when visiting ClassNode within superId field
+    private final TypeTable types;
+    private final Map<String, Integer> index = new HashMap<>(); // of each class, in declaration order
+    private String[] names = new String[0];
+    private int[] pre = new int[0], size = new int[0];
+    private int[][] up = new int[0][];
+    private boolean frozen;
 
-    public static boolean isSubtype(TypeNode a, TypeNode b) {
+    TypeRels(TypeTable types) {
+        this.types = types;
+    }
+
+    // the class hierarchy of the global declarations; a superclass not declared before its subclass is
+    // an error of the symbol table, here the subclass is a root
+    public void freeze(List<? extends Node> declist) {
+        if (frozen) throw new IllegalStateException("Class hierarchy already frozen");
+        frozen = true;
+        int n = 0;
+        int[] parent = new int[declist.size()];
+        names = new String[declist.size()];
+        for (Node dec : declist)
+            if (dec instanceof ClassNode c && index.putIfAbsent(c.id, n) == null) {
+                Integer p = c.superId == null ? null : index.get(c.superId);
+                parent[n] = p == null ? -1 : p;
+                names[n++] = c.id;
+            }
+        names = Arrays.copyOf(names, n);
+
+        // a superclass comes before its subclasses: sizes backwards, numbers and jumps forwards
+        int[] depth = new int[n], next = new int[n];
+        pre = new int[n];
+        size = new int[n];
+        int maxDepth = 0, roots = 0;
+        for (int c = 0; c < n; c++) {
+            depth[c] = parent[c] < 0 ? 0 : depth[parent[c]] + 1;
+            maxDepth = Math.max(maxDepth, depth[c]);
+        }
+        for (int c = n - 1; c >= 0; c--) {
+            size[c]++;
+            if (parent[c] >= 0) size[parent[c]] += size[c];
+        }
+        for (int c = 0; c < n; c++) {
+            if (parent[c] < 0) {
+                pre[c] = roots;
+                roots += size[c];
+            } else {
+                pre[c] = next[parent[c]]; // the subtrees of the children follow each other
+                next[parent[c]] += size[c];
+            }
+            next[c] = pre[c] + 1;
+        }
+        up = new int[32 - Integer.numberOfLeadingZeros(maxDepth)][];
+        if (up.length > 0) up[0] = parent;
+        for (int k = 1; k < up.length; k++) {
+            up[k] = new int[n];
+            for (int c = 0; c < n; c++) up[k][c] = up[k - 1][c] < 0 ? -1 : up[k - 1][up[k - 1][c]];
+        }
+    }
+
+    public boolean isSubtype(TypeNode a, TypeNode b) {
+
+        if (a == b) return true; // the same type
 
         // a is null and b is a class ref -> a is a subtype of b
         if ((a instanceof EmptyTypeNode) && (b instanceof RefTypeNode)) return true;
 
         if (a instanceof RefTypeNode cA && b instanceof RefTypeNode cB) {
-            // a is a class ref and b is a class ref
-            // if a and b are the same class -> a is a subtype of b
-            if (cA.id.equals(cB.id)) return true;
+            // a is a class ref and b is a class ref, not the same class
             // check if a is a subtype of b
-            return isSuperClass(cA, cB);
+            Integer i = index.get(cA.id), j = index.get(cB.id);
+            return i != null && j != null && isSubclass(i, j);
         }
 
         if ((a instanceof ArrowTypeNode fA) && (b instanceof ArrowTypeNode fB)) {
@@ -37,21 +102,16 @@ public class TypeRels {
             return true;
         }
 
-        // this remains the same
-        // evaluate if a <= b, where a and b are primitive types (IntTypeNode or BoolTypeNode)
-        return (a.getClass().equals(b.getClass()) || ((a instanceof BoolTypeNode) && (b instanceof IntTypeNode)));
+        // evaluate if a <= b, where a and b are primitive types (IntTypeNode or BoolTypeNode), not the same
+        return a == BoolTypeNode.INSTANCE && b == IntTypeNode.INSTANCE;
     }
 
-    private static boolean isSuperClass(final RefTypeNode a, final RefTypeNode b) {
-        var superClass = a.id;
-        // TODO. Check if it works correctly.
-        // Roll up the inheritance tree until we find the class b or we reach the top of the tree
-        while (!superClass.isEmpty() && !b.id.equals(superClass))
-            superClass = superType.get(superClass) == null ? "" : superType.get(superClass);
-        return !superClass.isEmpty();
+    // class a is b or a subclass of b: its number is in the interval of b
+    private boolean isSubclass(int a, int b) {
+        return pre[b] <= pre[a] && pre[a] < pre[b] + size[b];
     }
 
-    public static TypeNode getLowestCommonAncestor(final TypeNode a, final TypeNode b) {
+    public TypeNode getLowestCommonAncestor(final TypeNode a, final TypeNode b) {
         // Refers to slide 51
 
         // a is a class ref and b is null -> return a
@@ -60,24 +120,24 @@ public class TypeRels {
         if (a instanceof EmptyTypeNode && b instanceof RefTypeNode) return b;
 
         if (a instanceof RefTypeNode cA && b instanceof RefTypeNode cB) {
-            var classA = cA.id;
-            var classB = cB.id;
-            if (classA.equals(classB)) return a; // if a and b are the same class -> return a
-
-            var superClassId = classA;
-            while (!superClassId.isEmpty()) {
-                superClassId = superType.get(classA) == null ? "" : superType.get(classA);
-                var superClass = new RefTypeNode(superClassId);
-                if (isSubtype(b, superClass)) return superClass;
-                classA = superClassId;
-            }
+            if (a == b) return a; // if a and b are the same class -> return a
+            Integer i = index.get(cA.id), j = index.get(cB.id);
+            if (i == null || j == null) return null;
+            int c = i;
+            if (isSubclass(j, c)) return a;
+            // the highest superclass of a that is not a superclass of b is right below the LCA
+            for (int k = up.length - 1; k >= 0; k--)
+                if (up[k][c] >= 0 && !isSubclass(j, up[k][c])) c = up[k][c];
+            c = up.length > 0 ? up[0][c] : -1;
+            if (c < 0) return null; // in different trees
+            return c == j ? b : types.ref(names[c]);
         }
 
         // a and b are primitive types
-        if (isSubtype(a, new IntTypeNode()) && isSubtype(b, new IntTypeNode()))
-            if (a instanceof IntTypeNode || b instanceof IntTypeNode) // if a or b is IntTypeNode -> return IntTypeNode
-                return new IntTypeNode();
-            else return new BoolTypeNode();
+        if (isSubtype(a, IntTypeNode.INSTANCE) && isSubtype(b, IntTypeNode.INSTANCE))
+            if (a == IntTypeNode.INSTANCE || b == IntTypeNode.INSTANCE) // if a or b is IntTypeNode -> return IntTypeNode
+                return IntTypeNode.INSTANCE;
+            else return BoolTypeNode.INSTANCE;
 
         return null; // Every other case
     }
@@ -0,0 +1,127 @@
+package compiler;
+
+import compiler.AST.*;
+import compiler.lib.Node;
+import compiler.lib.TypeNode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// Subtype checks and LCAs of TypeRels, on the numbered class hierarchy, against the walk up the superclass
+// chain that it replaces, on generated hierarchies of "classes" classes: deep (a single chain), wide (all
+// subclasses of one class) and random (each class extends a random class declared before, or none).
+// The same random queries, between two classes of the hierarchy, are answered by both, which must agree;
+// the best time of "runs" runs, after as many warm-up runs, is reported in nanoseconds per query.
+//
+// Usage: java compiler.TypeRelsBenchmark [-classes n,...] [-queries q] [-runs r]
+public class TypeRelsBenchmark {
+
+    // the superclass chain walk, with the LCA as the first superclass of a (a included) above b
+    private static class Walk {
+        final Map<String, String> superType = new HashMap<>();
+
+        boolean isSubtype(String a, String b) {
+            for (String c = a; c != null; c = superType.get(c))
+                if (c.equals(b)) return true;
+            return false;
+        }
+
+        String lca(String a, String b) {
+            for (String c = a; c != null; c = superType.get(c))
+                if (isSubtype(b, c)) return c;
+            return null;
+        }
+    }
+
+    private static List<Node> hierarchy(String shape, int classes, Random random) {
+        List<Node> declist = new ArrayList<>();
+        for (int c = 0; c < classes; c++) {
+            String superId = switch (shape) {
+                case "deep" -> c == 0 ? null : "C" + (c - 1);
+                case "wide" -> c == 0 ? null : "C0";
+                default -> c == 0 || random.nextInt(8) == 0 ? null : "C" + random.nextInt(c);
+            };
+            declist.add(new ClassNode("C" + c, superId, List.of(), List.of()));
+        }
+        return declist;
+    }
+
+    private static String id(TypeNode t) {
+        return t instanceof RefTypeNode r ? r.id : null;
+    }
+
+    public static void main(String[] args) {
+        int[] sizes = {100, 1000, 10000};
+        int queries = 100000, runs = 5;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-classes" -> {
+                    String[] list = args[++i].split(",");
+                    sizes = new int[list.length];
+                    for (int k = 0; k < list.length; k++) sizes[k] = Integer.parseInt(list[k]);
+                }
+                case "-queries" -> queries = Integer.parseInt(args[++i]);
+                case "-runs" -> runs = Integer.parseInt(args[++i]);
+                default -> {
+                    System.out.println("Usage: java compiler.TypeRelsBenchmark [-classes n,...] [-queries q] [-runs r]");
+                    System.exit(1);
+                }
+            }
+        }
+
+        System.out.println("shape    classes  freeze ms  walk subtype ns  subtype ns  walk LCA ns  LCA ns");
+        for (String shape : new String[] {"deep", "wide", "random"})
+            for (int classes : sizes) {
+                var random = new Random(42);
+                List<Node> declist = hierarchy(shape, classes, random);
+                var walk = new Walk();
+                for (Node dec : declist)
+                    if (dec instanceof ClassNode c && c.superId != null) walk.superType.put(c.id, c.superId);
+                long freeze = System.nanoTime();
+                var table = new TypeTable();
+                var rels = new TypeRels(table);
+                rels.freeze(declist);
+                freeze = System.nanoTime() - freeze;
+
+                RefTypeNode[] types = new RefTypeNode[classes];
+                for (int c = 0; c < classes; c++) types[c] = table.ref("C" + c);
+                int[] a = new int[queries], b = new int[queries];
+                for (int q = 0; q < queries; q++) {
+                    a[q] = random.nextInt(classes);
+                    b[q] = random.nextInt(classes);
+                }
+                // the slow walks get fewer queries, they are quadratic on a deep hierarchy
+                int walkQueries = Math.max(1, Math.min(queries, 20000000 / classes / classes));
+                for (int q = 0; q < walkQueries; q++)
+                    if (walk.isSubtype(types[a[q]].id, types[b[q]].id) != rels.isSubtype(types[a[q]], types[b[q]])
+                            || !String.valueOf(walk.lca(types[a[q]].id, types[b[q]].id))
+                                .equals(String.valueOf(id(rels.getLowestCommonAncestor(types[a[q]], types[b[q]])))))
+                        throw new IllegalStateException("TypeRels disagrees on C" + a[q] + ", C" + b[q]);
+
+                long[] best = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE};
+                int count = 0; // of the answers, so that the queries are not optimized away
+                for (int r = 0; r < 2 * runs; r++) {
+                    long[] time = new long[4];
+                    long start = System.nanoTime();
+                    for (int q = 0; q < walkQueries; q++) if (walk.isSubtype(types[a[q]].id, types[b[q]].id)) count++;
+                    time[0] = (System.nanoTime() - start) / walkQueries;
+                    start = System.nanoTime();
+                    for (int q = 0; q < queries; q++) if (rels.isSubtype(types[a[q]], types[b[q]])) count++;
+                    time[1] = (System.nanoTime() - start) / queries;
+                    start = System.nanoTime();
+                    for (int q = 0; q < walkQueries; q++) if (walk.lca(types[a[q]].id, types[b[q]].id) != null) count++;
+                    time[2] = (System.nanoTime() - start) / walkQueries;
+                    start = System.nanoTime();
+                    for (int q = 0; q < queries; q++) if (rels.getLowestCommonAncestor(types[a[q]], types[b[q]]) != null) count++;
+                    time[3] = (System.nanoTime() - start) / queries;
+                    if (r >= runs) for (int k = 0; k < 4; k++) best[k] = Math.min(best[k], time[k]);
+                }
+                if (count < 0) System.out.println(count);
+                System.out.printf("%-7s %8d %10.2f %16d %11d %12d %7d%n", shape, classes, freeze / 1e6,
+                        best[0], best[1], best[2], best[3]);
+            }
+    }
+}
@@ -0,0 +1,35 @@
+package compiler;
+
+import compiler.AST.*;
+import compiler.lib.TypeNode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Hash-consing of the types of a compilation (see CompilationContext): a single instance of each class
+// reference, function and method type, made of canonical component types, so that two types are equal iff
+// they are the same object. int, bool and the null type have a single instance each (IntTypeNode.INSTANCE...).
+// Type nodes are immutable and shared by all the nodes that have that type: their line is never set.
+public class TypeTable {
+
+    private record ArrowKey(List<TypeNode> parlist, TypeNode ret) { // compared by identity of the components
+    }
+
+    private final Map<String, RefTypeNode> refs = new HashMap<>();
+    private final Map<ArrowKey, ArrowTypeNode> arrows = new HashMap<>();
+    private final Map<ArrowTypeNode, MethodTypeNode> methods = new HashMap<>();
+
+    public RefTypeNode ref(String id) {
+        return refs.computeIfAbsent(id, RefTypeNode::new);
+    }
+
+    public ArrowTypeNode arrow(List<TypeNode> parlist, TypeNode ret) {
+        return arrows.computeIfAbsent(new ArrowKey(new ArrayList<>(parlist), ret), k -> new ArrowTypeNode(k.parlist(), k.ret()));
+    }
+
+    public MethodTypeNode method(ArrowTypeNode fun) {
+        return methods.computeIfAbsent(fun, MethodTypeNode::new);
+    }
+}
@@ -0,0 +1,135 @@
+package compiler.lib;
+
+import svm.Assembler;
+import svm.Opcodes;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Code generated for the SVM: a single instruction, a label definition or a sequence of Code.
+// The code generator builds it bottom-up with FOOLlib.nlJoin, which concatenates in time proportional
+// to the number of its arguments (nothing is copied), and the whole program is flattened only once at
+// the end: assembled in memory (assemble) or, for debugging, turned into assembly text (text).
+public final class Code {
+
+    public static final int LABEL = 0; // pseudo-opcode of a label definition
+
+    // instructions without operands, shared by all the code
+    public static final Code POP = new Code(Opcodes.POP), ADD = new Code(Opcodes.ADD), SUB = new Code(Opcodes.SUB),
+            MULT = new Code(Opcodes.MULT), DIV = new Code(Opcodes.DIV), SW = new Code(Opcodes.STOREW),
+            LW = new Code(Opcodes.LOADW), JS = new Code(Opcodes.JS), LRA = new Code(Opcodes.LOADRA),
+            SRA = new Code(Opcodes.STORERA), LTM = new Code(Opcodes.LOADTM), STM = new Code(Opcodes.STORETM),
+            LFP = new Code(Opcodes.LOADFP), SFP = new Code(Opcodes.STOREFP), CFP = new Code(Opcodes.COPYFP),
+            LHP = new Code(Opcodes.LOADHP), SHP = new Code(Opcodes.STOREHP), PRINT = new Code(Opcodes.PRINT),
+            HALT = new Code(Opcodes.HALT), NEW = new Code(Opcodes.NEW);
+
+    public final int opcode; // an svm.Opcodes constant or LABEL (-1 for a sequence)
+    public final int value; // operand of a push of a number
+    public final String label; // label operand of push, b, beq and bleq, or the label defined
+    private final Code[] parts; // of a sequence
+
+    private Code(int opcode, int value, String label, Code[] parts) {
+        this.opcode = opcode;
+        this.value = value;
+        this.label = label;
+        this.parts = parts;
+    }
+
+    private Code(int opcode) {
+        this(opcode, 0, null, null);
+    }
+
+    public static Code push(int value) {
+        return new Code(Opcodes.PUSH, value, null, null);
+    }
+
+    public static Code push(String label) {
+        return new Code(Opcodes.PUSH, 0, label, null);
+    }
+
+    public static Code b(String label) {
+        return new Code(Opcodes.BRANCH, 0, label, null);
+    }
+
+    public static Code beq(String label) {
+        return new Code(Opcodes.BRANCHEQ, 0, label, null);
+    }
+
+    public static Code bleq(String label) {
+        return new Code(Opcodes.BRANCHLESSEQ, 0, label, null);
+    }
+
+    public static Code label(String label) {
+        return new Code(LABEL, 0, label, null);
+    }
+
+    // sequence of the non null parts, null if there are none
+    static Code sequence(Code... parts) {
+        int n = 0;
+        for (Code c : parts) if (c != null) n++;
+        if (n == 0) return null;
+        if (n == 1) for (Code c : parts) if (c != null) return c;
+        Code[] seq = new Code[n];
+        n = 0;
+        for (Code c : parts) if (c != null) seq[n++] = c;
+        return new Code(-1, 0, null, seq);
+    }
+
+    // the same instruction with another label operand
+    public Code withLabel(String label) {
+        return new Code(opcode, value, label, null);
+    }
+
+    public boolean isLabel() {
+        return opcode == LABEL;
+    }
+
+    // instructions and label definitions in order; sequences may nest very deeply
+    // (declarations are joined one at a time), so they are flattened without recursion
+    public void forEach(Consumer<Code> action) {
+        var todo = new ArrayDeque<Code>();
+        todo.push(this);
+        while (!todo.isEmpty()) {
+            Code c = todo.pop();
+            if (c.parts == null) action.accept(c);
+            else for (int i = c.parts.length - 1; i >= 0; i--) todo.push(c.parts[i]);
+        }
+    }
+
+    public List<Code> instructions() {
+        List<Code> list = new ArrayList<>();
+        forEach(list::add);
+        return list;
+    }
+
+    // appends the instructions to the code buffer of asm (labels are resolved by asm.finish())
+    public void assemble(Assembler asm) {
+        forEach(c -> {
+            if (c.opcode == LABEL) asm.label(c.label);
+            else if (c.label != null) asm.op(c.opcode, c.label);
+            else if (c.opcode == Opcodes.PUSH) asm.op(c.opcode, c.value);
+            else asm.op(c.opcode);
+        });
+    }
+
+    // assembly text, one instruction or label definition per line
+    public String text() {
+        var sb = new StringBuilder();
+        forEach(c -> sb.append(c.line()).append('\n'));
+        return sb.toString();
+    }
+
+    private String line() {
+        if (opcode == LABEL) return label + ":";
+        if (label != null) return Opcodes.name(opcode) + " " + label;
+        if (opcode == Opcodes.PUSH) return "push " + value;
+        return Opcodes.name(opcode);
+    }
+
+    @Override
+    public String toString() {
+        return parts == null ? line() : text();
+    }
+}
@@ -0,0 +1,82 @@
+package svm;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Assembles SVM instructions into a code buffer that grows on demand, without going through
+// assembly text: the compiler feeds it the code it generates, SVMParser the instructions of .asm files.
+// A reference to a label defined later leaves a fixup (position of the operand and label) in a list
+// that finish() patches once all the labels are known.
+public class Assembler {
+
+    private int[] code = new int[ExecuteVM.CODESIZE];
+    private int length;
+    private final Map<String, Integer> labels = new HashMap<>();
+
+    private int[] fixupAt = new int[64];
+    private String[] fixupLabel = new String[64];
+    private int fixups;
+
+    public void op(int opcode) {
+        ensure(1);
+        code[length++] = opcode;
+    }
+
+    public void op(int opcode, int operand) {
+        ensure(2);
+        code[length++] = opcode;
+        code[length++] = operand;
+    }
+
+    // push, b, beq or bleq of the address of a label
+    public void op(int opcode, String label) {
+        ensure(2);
+        code[length++] = opcode;
+        Integer address = labels.get(label);
+        if (address == null) {
+            if (fixups == fixupAt.length) {
+                fixupAt = Arrays.copyOf(fixupAt, 2 * fixups);
+                fixupLabel = Arrays.copyOf(fixupLabel, 2 * fixups);
+            }
+            fixupAt[fixups] = length;
+            fixupLabel[fixups++] = label;
+            address = 0;
+        }
+        code[length++] = address;
+    }
+
+    // the label points at the location of the next instruction
+    public void label(String label) {
+        if (labels.putIfAbsent(label, length) != null)
+            throw new IllegalArgumentException("Label " + label + " defined twice");
+    }
+
+    // patches the references to labels defined after them
+    public Assembler finish() {
+        for (int f = 0; f < fixups; f++) {
+            Integer address = labels.get(fixupLabel[f]);
+            if (address == null) throw new IllegalStateException("Undefined label " + fixupLabel[f]);
+            code[fixupAt[f]] = address;
+        }
+        fixups = 0;
+        return this;
+    }
+
+    // the buffer, whose first length() words are the code
+    public int[] code() {
+        return code;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public Map<String, Integer> labels() {
+        return labels;
+    }
+
+    private void ensure(int words) {
+        if (length + words > code.length) code = Arrays.copyOf(code, Math.max(2 * code.length, length + words));
+    }
+}
@@ -0,0 +1,228 @@
+package svm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Minimal writer of JVM class files, just what the Jit needs: a constant pool, methods with a Code
+// attribute, branches to labels. Classes are written with version 49 (Java 5) so that no StackMapTable
+// is required: the JVM verifies them by type inference.
+class ClassFileWriter {
+
+    static final int ACC_PUBLIC = 0x0001, ACC_FINAL = 0x0010, ACC_SUPER = 0x0020;
+
+    // opcodes used by the Jit
+    static final int ICONST_0 = 3, BIPUSH = 16, SIPUSH = 17, LDC_W = 19, ILOAD = 21, ALOAD = 25,
+            IALOAD = 46, ISTORE = 54, ASTORE = 58, IASTORE = 79, DUP2 = 92,
+            IADD = 96, ISUB = 100, IMUL = 104, IDIV = 108, INEG = 116, IINC = 132,
+            IFLT = 155, IFGE = 156, IF_ICMPEQ = 159, IF_ICMPNE = 160, IF_ICMPLE = 164, GOTO = 167,
+            LOOKUPSWITCH = 171, IRETURN = 172, RETURN = 177, GETFIELD = 180, PUTFIELD = 181,
+            INVOKEVIRTUAL = 182, INVOKESPECIAL = 183, ARRAYLENGTH = 190;
+
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+    private final Map<String, Integer> poolIndex = new HashMap<>();
+    private int poolCount = 1;
+    private final List<byte[]> methods = new ArrayList<>();
+
+    int utf8(String s) {
+        return constant("U" + s, out -> { out.writeByte(1); out.writeUTF(s); });
+    }
+
+    int classRef(String internalName) {
+        int name = utf8(internalName);
+        return constant("C" + internalName, out -> { out.writeByte(7); out.writeShort(name); });
+    }
+
+    int intConst(int value) {
+        return constant("I" + value, out -> { out.writeByte(3); out.writeInt(value); });
+    }
+
+    int fieldRef(String owner, String name, String descriptor) {
+        return memberRef(9, owner, name, descriptor);
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        return memberRef(10, owner, name, descriptor);
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        int c = classRef(owner), n = utf8(name), d = utf8(descriptor);
+        int nameAndType = constant("N" + name + ":" + descriptor, out -> {
+            out.writeByte(12); out.writeShort(n); out.writeShort(d);
+        });
+        return constant(tag + owner + "." + name + ":" + descriptor, out -> {
+            out.writeByte(tag); out.writeShort(c); out.writeShort(nameAndType);
+        });
+    }
+
+    private interface Entry {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private int constant(String key, Entry entry) {
+        Integer index = poolIndex.get(key);
+        if (index != null) return index;
+        try {
+            entry.write(poolOut);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        poolIndex.put(key, poolCount);
+        return poolCount++;
+    }
+
+    void addMethod(int access, String name, String descriptor, Code code) {
+        int n = utf8(name), d = utf8(descriptor), attr = utf8("Code");
+        byte[] bytes = code.toBytes();
+        var buf = new ByteArrayOutputStream();
+        try (var out = new DataOutputStream(buf)) {
+            out.writeShort(access);
+            out.writeShort(n);
+            out.writeShort(d);
+            out.writeShort(1); // attributes
+            out.writeShort(attr);
+            out.writeInt(12 + bytes.length);
+            out.writeShort(code.maxStack);
+            out.writeShort(code.maxLocals);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            out.writeShort(0); // exception table
+            out.writeShort(0); // attributes of Code
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        methods.add(buf.toByteArray());
+    }
+
+    byte[] toBytes(String name, String superName, String... interfaces) {
+        int thisClass = classRef(name), superClass = classRef(superName);
+        int[] itf = Arrays.stream(interfaces).mapToInt(this::classRef).toArray();
+        var buf = new ByteArrayOutputStream();
+        try (var out = new DataOutputStream(buf)) {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(49);
+            out.writeShort(poolCount);
+            out.write(pool.toByteArray());
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(itf.length);
+            for (int i : itf) out.writeShort(i);
+            out.writeShort(0); // fields
+            out.writeShort(methods.size());
+            for (byte[] m : methods) out.write(m);
+            out.writeShort(0); // attributes
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return buf.toByteArray();
+    }
+
+    static class Label {
+        private int position = -1;
+        private final List<int[]> fixups = new ArrayList<>(); // {instruction start, patch position, width}
+    }
+
+    // bytecode of a method body; branch offsets are patched when labels are bound
+    static class Code {
+        int maxStack, maxLocals;
+        private byte[] bytes = new byte[256];
+        private int length;
+
+        Code(int maxStack, int maxLocals) {
+            this.maxStack = maxStack;
+            this.maxLocals = maxLocals;
+        }
+
+        int length() {
+            return length;
+        }
+
+        Code op(int... ops) {
+            for (int op : ops) u1(op);
+            return this;
+        }
+
+        Code op(int op, int operand) { // one byte operand (local variable index, bipush)
+            return u1(op).u1(operand);
+        }
+
+        Code ref(int op, int poolIndex) { // field and method instructions
+            return u1(op).u2(poolIndex);
+        }
+
+        Code iinc(int local, int delta) {
+            if (delta < -128 || delta > 127) throw new IllegalArgumentException("iinc " + delta);
+            return u1(IINC).u1(local).u1(delta);
+        }
+
+        Code pushInt(ClassFileWriter cw, int value) {
+            if (value >= -1 && value <= 5) return u1(ICONST_0 + value);
+            if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) return u1(BIPUSH).u1(value);
+            if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) return u1(SIPUSH).u2(value);
+            return u1(LDC_W).u2(cw.intConst(value));
+        }
+
+        Code branch(int op, Label target) {
+            int start = length;
+            u1(op);
+            target.fixups.add(new int[] {start, length, 2});
+            return u2(0);
+        }
+
+        Code lookupswitch(int[] keys, Label[] targets, Label dflt) { // keys sorted
+            int start = length;
+            u1(LOOKUPSWITCH);
+            while (length % 4 != 0) u1(0);
+            dflt.fixups.add(new int[] {start, length, 4});
+            u4(0);
+            u4(keys.length);
+            for (int i = 0; i < keys.length; i++) {
+                u4(keys[i]);
+                targets[i].fixups.add(new int[] {start, length, 4});
+                u4(0);
+            }
+            return this;
+        }
+
+        void bind(Label label) {
+            label.position = length;
+        }
+
+        byte[] toBytes() {
+            return Arrays.copyOf(bytes, length);
+        }
+
+        // patches the branches to the labels, failing if an offset does not fit
+        void resolve(Iterable<Label> labels) {
+            for (Label label : labels)
+                for (int[] f : label.fixups) {
+                    int offset = label.position - f[0];
+                    if (label.position < 0 || f[2] == 2 && (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE))
+                        throw new IllegalStateException("Branch offset out of range");
+                    for (int i = 0; i < f[2]; i++) bytes[f[1] + i] = (byte) (offset >> (8 * (f[2] - 1 - i)));
+                }
+        }
+
+        private Code u1(int b) {
+            if (length == bytes.length) bytes = Arrays.copyOf(bytes, 2 * length);
+            bytes[length++] = (byte) b;
+            return this;
+        }
+
+        private Code u2(int v) {
+            return u1(v >> 8).u1(v);
+        }
+
+        private Code u4(int v) {
+            return u2(v >> 16).u2(v);
+        }
+    }
+}
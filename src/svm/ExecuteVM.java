@@ -1,126 +1,915 @@
 package svm;
+
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
 public class ExecuteVM {
     
-    public static final int CODESIZE = 10000;
-    public static final int MEMSIZE = 10000;
-    
+    public static final int CODESIZE = 10000; // initial size of the assembler code buffer, which grows on demand
+    public static final int MEMSIZE = 4 * 1024; // default initial words of stack and heap together
+    public static final int MAXMEMSIZE = 64 * 1024 * 1024; // default limit to the words of stack and heap together
+
+    // Memory is made of two regions that grow independently, each one doubling on demand
+    // as long as their overall size stays within maxMemSize:
+    // - the heap, for addresses >= 0, growing upwards from address 0 (heap[address])
+    // - the stack, for addresses < 0, growing downwards from address 0 (stack[-address])
+    // Hence the stack base (and so the global frame, where classes' dispatch pointers are)
+    // is at address 0 whatever the memory size. stack[0] is a guard word, see cpuRegister().
+    // Null is the address NULL, stack[1]: the return address of the global frame, never read by the code;
+    // loading from it, or from a field of it, raises an SVMException.
+    public static final int NULL = -1;
     private int[] code;
-    private int[] memory = new int[MEMSIZE];
-    
+    private int[] stack;
+    private int[] heap;
+    private final int maxMemSize;
+
+    // Objects allocated by "new" live in the heap above heapBase (what is below it, the dispatch tables,
+    // is never moved) and are reclaimed by a semi-space copying collector: when an allocation does not fit
+    // in the heap region, live objects are copied into toSpace, which then becomes the heap.
+    // Roots are found precisely through the root maps of the compiler (see RootMap).
+    // Layout of an object with n fields: field i at address-1-i, dispatch pointer at address;
+    // its class descriptor: number of fields at dispatch pointer-1, 1 at dispatch pointer-2-i if field i is a pointer.
+    private final Map<Integer, RootMap> rootMaps; // no collection if empty: the heap just grows
+    private int heapBase = -1; // set by the first "new"
+    private int[] toSpace;
+    private int[] gray; // copied objects whose fields are still to be forwarded (during a collection)
+    private int grayCount;
+    private boolean verboseGC;
+    private int gcCount;
+    private long gcNanos, gcMaxNanos, gcReclaimed;
+
     private int ip = 0;
-    private int sp = MEMSIZE;
-    
-    private int hp = 0;       
-    private int fp = MEMSIZE; 
-    private int ra;           
+    private int sp = 0;
+
+    private int hp = 0;
+    private int fp = 0;
+    private int ra;
     private int tm;
     
+    // interpreter loops available for the same bytecode
+    public enum Engine { SWITCH, REGISTER, TIERED, FAST } // FAST: REGISTER unchecked, for verified programs
+
+    public static final int JITTHRESHOLD = 1000; // default number of calls after which a function is compiled
+
+    private Jit jit; // null unless the tiered engine is enabled
+    private int[] frames; // maximum stack depth of each function (by entry address), null unless verified
+    private Meter meter; // null unless instructions are counted (by cpu() only)
+    private OutputSink output = OutputSink.buffered(System.out); // flushed at halt or if execution aborts
+
     public ExecuteVM(int[] code) {
+      this(code, Map.of());
+    }
+
+    public ExecuteVM(int[] code, Map<Integer, RootMap> rootMaps) {
+      this(code, rootMaps, MEMSIZE, MAXMEMSIZE);
+    }
+
+    public ExecuteVM(int[] code, Map<Integer, RootMap> rootMaps, int memSize, int maxMemSize) {
+      if (memSize < 4 || memSize > maxMemSize)
+        throw new IllegalArgumentException("Invalid memory size " + memSize + " (limit " + maxMemSize + ")");
       this.code = code;
+      this.rootMaps = rootMaps;
+      this.stack = new int[memSize / 2];
+      this.heap = new int[memSize - memSize / 2];
+      this.maxMemSize = maxMemSize;
+    }
+
+    // enables the tiered engine (the switch interpreter plus the Jit) for the functions starting at the given addresses
+    public void enableJit(Collection<Integer> functionEntries, int threshold) {
+      jit = new Jit(this, MethodHandles.lookup(), code, functionEntries, threshold);
+    }
+
+    public String jitReport() {
+      return jit == null ? "JIT: disabled" : jit.report();
+    }
+
+    // runs the Verifier: if the program passes, the FAST engine can be used
+    public void verify(Map<String, Integer> symbols) {
+      frames = Verifier.verify(code, code.length, symbols, rootMaps);
+    }
+
+    void setMeter(Meter meter) {
+      this.meter = meter;
+    }
+
+    public void setOutput(OutputSink output) {
+      this.output = output;
+    }
+
+    public void setVerboseGC(boolean verbose) {
+      verboseGC = verbose;
+    }
+
+    public String gcReport() {
+      return String.format("GC: %d collections, %d words reclaimed, total pause %.3f ms, max pause %.3f ms",
+          gcCount, gcReclaimed, gcNanos / 1e6, gcMaxNanos / 1e6);
+    }
+
+    // runs a precompiled object file: the load path does not involve ANTLR at all
+    public static void main(String[] args) throws Exception {
+      Engine engine = Engine.SWITCH;
+      int memSize = MEMSIZE, maxMemSize = MAXMEMSIZE;
+      int jitThreshold = JITTHRESHOLD;
+      boolean verboseGC = false;
+      String file = null, profile = null;
+      boolean discard = false;
+      for (int i = 0; i < args.length; i++)
+        if (args[i].equals("-engine") && i + 1 < args.length) engine = Engine.valueOf(args[++i].toUpperCase());
+        else if (args[i].equals("-mem") && i + 1 < args.length) memSize = parseWords(args[++i]);
+        else if (args[i].equals("-maxmem") && i + 1 < args.length) maxMemSize = parseWords(args[++i]);
+        else if (args[i].equals("-jitthreshold") && i + 1 < args.length) jitThreshold = Integer.parseInt(args[++i]);
+        else if (args[i].equals("-verbosegc")) verboseGC = true;
+        else if (args[i].equals("-profile") && i + 1 < args.length) profile = args[++i];
+        else if (args[i].equals("-discard")) discard = true;
+        else file = args[i];
+      if (file == null) {
+        System.out.println("Usage: java svm.ExecuteVM [-engine switch|register|tiered|fast] [-jitthreshold calls]");
+        System.out.println("                           [-mem words] [-maxmem words] [-verbosegc] [-profile report.json]");
+        System.out.println("                           [-discard] <file.svmo>");
+        System.out.println("       (sizes in words, optionally followed by K or M)");
+        System.exit(1);
+      }
+      ObjectFile obj = ObjectFile.load(Path.of(file));
+      Superinstructions.fuse(obj.code, obj.code.length, obj.symbols.values());
+      ExecuteVM vm = new ExecuteVM(obj.code, obj.rootMaps, Math.min(memSize, maxMemSize), maxMemSize);
+      vm.setVerboseGC(verboseGC);
+      if (discard) vm.setOutput(OutputSink.discard()); // output of the program ignored (benchmarks)
+      if (engine == Engine.TIERED)
+        vm.enableJit(obj.symbols.entrySet().stream()
+            .filter(s -> s.getKey().startsWith("function")).map(Map.Entry::getValue).toList(), jitThreshold);
+      if (engine == Engine.FAST)
+        try {
+          vm.verify(obj.symbols);
+        } catch (SVMException e) {
+          System.err.println(e.getMessage() + ": running the checked engine");
+        }
+      if (profile != null) { // the engine is ignored: the profiling loop is a variant of the switch one
+        Profiler profiler = vm.profile(obj.symbols);
+        System.err.print(profiler.report());
+        profiler.writeJson(Path.of(profile));
+      } else vm.run(engine);
+      if (verboseGC || vm.gcCount > 0) System.err.println(vm.gcReport());
+      if (engine == Engine.TIERED) System.err.println(vm.jitReport());
+    }
+
+    // "4096", "64K", "16M" -> number of words
+    private static int parseWords(String s) {
+      String u = s.toUpperCase();
+      int scale = u.endsWith("K") ? 1024 : u.endsWith("M") ? 1024 * 1024 : 1;
+      if (scale > 1) u = u.substring(0, u.length() - 1);
+      return Math.toIntExact(Long.parseLong(u) * scale);
+    }
+
+    public void run(Engine engine) {
+      switch (engine) {
+        case SWITCH, TIERED -> cpu(); // the Jit, if enabled, takes over at calls and returns
+        case REGISTER -> cpuRegister();
+        case FAST -> {
+          if (frames != null) cpuFast();
+          else cpuRegister(); // not verified: fully checked loop
+        }
+      }
     }
     
     public void cpu() {
-      while ( true ) {
-        int bytecode = code[ip++]; // fetch
-        int v1,v2;
-        int address;
-        switch ( bytecode ) {
-          case SVMParser.PUSH:
-            push( code[ip++] );
-            break;
-          case SVMParser.POP:
-            pop();
-            break;
-          case SVMParser.ADD :
-            v1=pop();
-            v2=pop();
-            push(v2 + v1);
-            break;
-          case SVMParser.MULT :
-            v1=pop();
-            v2=pop();
-            push(v2 * v1);
-            break;
-          case SVMParser.DIV :
-            v1=pop();
-            v2=pop();
-            push(v2 / v1);
-            break;
-          case SVMParser.SUB :
-            v1=pop();
-            v2=pop();
-            push(v2 - v1);
-            break;
-          case SVMParser.STOREW : //
-            address = pop();
-            memory[address] = pop();    
-            break;
-          case SVMParser.LOADW : //
-            push(memory[pop()]);
-            break;
-          case SVMParser.BRANCH : 
-            address = code[ip];
-            ip = address;
-            break;
-          case SVMParser.BRANCHEQ :
-            address = code[ip++];
-            v1=pop();
-            v2=pop();
-            if (v2 == v1) ip = address;
-            break;
-          case SVMParser.BRANCHLESSEQ :
-            address = code[ip++];
-            v1=pop();
-            v2=pop();
-            if (v2 <= v1) ip = address;
-            break;
-          case SVMParser.JS : //
-            address = pop();
-            ra = ip;
-            ip = address;
-            break;
-         case SVMParser.STORERA : //
-            ra=pop();
-            break;
-         case SVMParser.LOADRA : //
-            push(ra);
-            break;
-         case SVMParser.STORETM : 
-            tm=pop();
-            break;
-         case SVMParser.LOADTM : 
-            push(tm);
-            break;
-         case SVMParser.LOADFP : //
-            push(fp);
-            break;
-         case SVMParser.STOREFP : //
-            fp=pop();
-            break;
-         case SVMParser.COPYFP : //
-            fp=sp;
-            break;
-         case SVMParser.STOREHP : //
-            hp=pop();
-            break;
-         case SVMParser.LOADHP : //
-            push(hp);
-            break;
-         case SVMParser.PRINT :
-            System.out.println((sp<MEMSIZE)?memory[sp]:"Empty stack!");
-            break;
-         case SVMParser.HALT :
-            return;
+      try {
+        while ( true ) {
+          int bytecode = code[ip++]; // fetch
+          int v1,v2;
+          int address;
+          switch ( bytecode ) {
+            case Opcodes.PUSH:
+              push( code[ip++] );
+              break;
+            case Opcodes.POP:
+              pop();
+              break;
+            case Opcodes.ADD :
+              v1=pop();
+              v2=pop();
+              push(v2 + v1);
+              break;
+            case Opcodes.MULT :
+              v1=pop();
+              v2=pop();
+              push(v2 * v1);
+              break;
+            case Opcodes.DIV :
+              v1=pop();
+              v2=pop();
+              push(v2 / v1);
+              break;
+            case Opcodes.SUB :
+              v1=pop();
+              v2=pop();
+              push(v2 - v1);
+              break;
+            case Opcodes.STOREW : //
+              address = pop();
+              store(address, pop());
+              break;
+            case Opcodes.LOADW : //
+              push(load(pop()));
+              break;
+            case Opcodes.BRANCH : 
+              address = code[ip];
+              if (meter != null) meter.jump(ip + 1, address);
+              ip = address;
+              if (jit != null) ip = jit.enter(ip); // a tail call enters compiled code as a call does
+              break;
+            case Opcodes.BRANCHEQ :
+              address = code[ip++];
+              v1=pop();
+              v2=pop();
+              if (v2 == v1) {
+                if (meter != null) meter.jump(ip, address);
+                ip = address;
+              }
+              break;
+            case Opcodes.BRANCHLESSEQ :
+              address = code[ip++];
+              v1=pop();
+              v2=pop();
+              if (v2 <= v1) {
+                if (meter != null) meter.jump(ip, address);
+                ip = address;
+              }
+              break;
+            case Opcodes.JS : //
+              address = pop();
+              ra = ip;
+              if (meter != null) meter.call(ip, address);
+              ip = address;
+              if (jit != null) ip = jit.enter(ip);
+              break;
+           case Opcodes.STORERA : //
+              ra=pop();
+              break;
+           case Opcodes.LOADRA : //
+              push(ra);
+              break;
+           case Opcodes.STORETM : 
+              tm=pop();
+              break;
+           case Opcodes.LOADTM : 
+              push(tm);
+              break;
+           case Opcodes.LOADFP : //
+              push(fp);
+              break;
+           case Opcodes.STOREFP : //
+              fp=pop();
+              break;
+           case Opcodes.COPYFP : //
+              fp=sp;
+              break;
+           case Opcodes.STOREHP : //
+              hp=pop();
+              break;
+           case Opcodes.LOADHP : //
+              push(hp);
+              break;
+           case Opcodes.PRINT :
+              print();
+              break;
+           case Opcodes.HALT :
+              if (meter != null) meter.halt(ip);
+              return;
+           case Opcodes.NEW :
+              newObject(ip - 1);
+              break;
+           // superinstructions (see Superinstructions): operands follow the opcode,
+           // then the rest of the replaced sequence is skipped
+           case Opcodes.LOADVAR :
+              v1 = code[ip++]; // depth
+              address = fp;
+              for (int d = 0; d < v1; d++) address = load(address);
+              push(load(address, code[ip]));
+              ip += v1 + 3;
+              break;
+           case Opcodes.DISPLAYVAR :
+              push(load(load(code[ip]), code[ip + 1]));
+              ip += 6;
+              break;
+           case Opcodes.DUP :
+              tm = stack[-sp];
+              push(tm);
+              ip += 2;
+              break;
+           case Opcodes.BUMPHP :
+              hp += code[ip];
+              ip += 4;
+              break;
+           case Opcodes.RETURN :
+              v1 = code[ip++]; // locals
+              v2 = code[ip++]; // Access Link and parameters
+              tm = pop();
+              sp += v1;
+              address = pop(); // return address
+              sp += v2;
+              fp = pop();
+              push(tm);
+              ra = ip + v1 + v2 + 3;
+              if (meter != null) meter.call(ra, address);
+              ip = address;
+              if (jit != null) ip = jit.enter(ip);
+              break;
+          }
         }
+      } finally {
+        output.flush();
       }
     } 
     
+    // Runs the program collecting a Profiler: same semantics as cpu() (without the Jit), in a separate loop
+    // so that the other engines do not pay for profiling.
+    // Function labels (and "main") are taken from the symbols.
+    public Profiler profile(Map<String, Integer> symbols) {
+      Profiler profiler = new Profiler(code, symbols);
+      try {
+        while ( true ) {
+          profiler.step(ip, sp);
+          int bytecode = code[ip++];
+          int v1,v2;
+          int address;
+          switch ( bytecode ) {
+            case Opcodes.PUSH -> push(code[ip++]);
+            case Opcodes.POP -> pop();
+            case Opcodes.ADD -> { v1 = pop(); v2 = pop(); push(v2 + v1); }
+            case Opcodes.MULT -> { v1 = pop(); v2 = pop(); push(v2 * v1); }
+            case Opcodes.DIV -> { v1 = pop(); v2 = pop(); push(v2 / v1); }
+            case Opcodes.SUB -> { v1 = pop(); v2 = pop(); push(v2 - v1); }
+            case Opcodes.STOREW -> { address = pop(); store(address, pop()); }
+            case Opcodes.LOADW -> push(load(pop()));
+            case Opcodes.BRANCH -> {
+              ip = code[ip];
+              profiler.branch(ip);
+            }
+            case Opcodes.BRANCHEQ -> {
+              address = code[ip++]; v1 = pop(); v2 = pop();
+              if (v2 == v1) ip = address;
+            }
+            case Opcodes.BRANCHLESSEQ -> {
+              address = code[ip++]; v1 = pop(); v2 = pop();
+              if (v2 <= v1) ip = address;
+            }
+            case Opcodes.JS -> {
+              address = pop();
+              ra = ip;
+              ip = address;
+              profiler.jump(ip);
+            }
+            case Opcodes.STORERA -> ra = pop();
+            case Opcodes.LOADRA -> push(ra);
+            case Opcodes.STORETM -> tm = pop();
+            case Opcodes.LOADTM -> push(tm);
+            case Opcodes.LOADFP -> push(fp);
+            case Opcodes.STOREFP -> fp = pop();
+            case Opcodes.COPYFP -> fp = sp;
+            case Opcodes.STOREHP -> hp = pop();
+            case Opcodes.LOADHP -> push(hp);
+            case Opcodes.PRINT -> print();
+            case Opcodes.HALT -> {
+              profiler.halt();
+              return profiler;
+            }
+            case Opcodes.NEW -> newObject(ip - 1);
+            case Opcodes.LOADVAR -> {
+              v1 = code[ip++];
+              address = fp;
+              for (int d = 0; d < v1; d++) address = load(address);
+              push(load(address, code[ip]));
+              ip += v1 + 3;
+            }
+            case Opcodes.DISPLAYVAR -> {
+              push(load(load(code[ip]), code[ip + 1]));
+              ip += 6;
+            }
+            case Opcodes.DUP -> {
+              tm = stack[-sp];
+              push(tm);
+              ip += 2;
+            }
+            case Opcodes.BUMPHP -> {
+              hp += code[ip];
+              ip += 4;
+            }
+            case Opcodes.RETURN -> {
+              v1 = code[ip++];
+              v2 = code[ip++];
+              tm = pop();
+              sp += v1;
+              address = pop();
+              sp += v2;
+              fp = pop();
+              push(tm);
+              ra = ip + v1 + v2 + 3;
+              ip = address;
+              profiler.jump(ip);
+            }
+          }
+        }
+      } finally {
+        output.flush();
+      }
+    }
+
+    private void print() {
+      if (sp < 0) output.println(stack[-sp]);
+      else output.println("Empty stack!");
+    }
+
     private int pop() {
-      return memory[sp++];
+      return stack[-(sp++)];
     }
-    
+
     private void push(int v) {
-      memory[--sp] = v;
+      if (-(--sp) == stack.length) growStack();
+      stack[-sp] = v;
     }
-    
-}
\ No newline at end of file
+
+    private int load(int address) {
+      return address >= 0 ? heap[address] : address != NULL ? stack[-address] : nullPointer();
+    }
+
+    // the word at offset from the address of a frame or of an object (whose fields are below it), not null
+    private int load(int address, int offset) {
+      return address != NULL ? load(address + offset) : nullPointer();
+    }
+
+    private static int nullPointer() {
+      throw new SVMException("Null pointer dereference");
+    }
+
+    private void store(int address, int value) {
+      if (address < 0) stack[-address] = value;
+      else {
+        if (address >= heap.length) growHeap(address);
+        heap[address] = value;
+      }
+    }
+
+    private int[] growStack() {
+      return growStack(stack.length);
+    }
+
+    private int[] growStack(int index) {
+      return stack = grow(stack, index, heap.length, "stack");
+    }
+
+    private int[] growHeap(int address) {
+      return heap = grow(heap, address, stack.length, "heap");
+    }
+
+    // "new" at address gcPoint: pops the dispatch pointer and the values of the fields (pushed in field order),
+    // allocates the object and pushes its address
+    private void newObject(int gcPoint) {
+      int dp = pop();
+      int fields = heap[dp - 1];
+      if (heapBase < 0) heapBase = hp;
+      if (hp + fields + 1 > heap.length) reserve(fields + 1, gcPoint, dp);
+      int address = hp + fields;
+      for (int i = fields - 1; i >= 0; i--) heap[address - 1 - i] = pop();
+      heap[address] = dp;
+      hp = address + 1;
+      push(address);
+    }
+
+    // makes room for an allocation of the given words, collecting garbage first if possible
+    private void reserve(int words, int gcPoint, int dp) {
+      if (!rootMaps.isEmpty()) {
+        collect(gcPoint, dp);
+        // grow anyway if the heap is more than half full after the collection, not to collect too often
+        if (2L * (hp - heapBase) > heap.length - heapBase && 2L * heap.length + stack.length <= maxMemSize)
+          growHeap(heap.length);
+      }
+      if (hp + words > heap.length) growHeap(hp + words - 1);
+      if (toSpace != null && toSpace.length != heap.length) toSpace = null; // reallocated at the next collection
+    }
+
+    // Copies the objects reachable from the stack into toSpace, which then becomes the heap.
+    // Roots: the fields of the object being allocated by the "new" at gcPoint (still on top of the stack)
+    // and the pointer slots of every frame, found walking the Control Links up to the global frame.
+    private void collect(int gcPoint, int dp) {
+      long start = System.nanoTime();
+      int[] from = heap;
+      int[] to = toSpace != null ? toSpace : new int[from.length];
+      int fromHp = hp;
+      System.arraycopy(from, 0, to, 0, heapBase); // dispatch tables and class descriptors
+      heap = to;
+      hp = heapBase;
+      gray = new int[16];
+      grayCount = 0;
+
+      int fields = from[dp - 1];
+      for (int i = 0; i < fields; i++)
+        if (from[dp - 2 - i] != 0) forwardSlot(from, fromHp, sp + fields - 1 - i);
+      int frame = fp;
+      RootMap map = rootMaps.get(gcPoint);
+      while (true) {
+        if (map == null) throw new SVMException("No root map for the frame at address " + frame);
+        for (int offset : map.pointers) forwardSlot(from, fromHp, frame + offset);
+        if (map.clOffset == 0) break;
+        int returnAddress = stack[-(frame - 1)];
+        frame = stack[-(frame + map.clOffset)];
+        map = rootMaps.get(returnAddress);
+      }
+
+      while (grayCount > 0) {
+        int address = gray[--grayCount];
+        int descriptor = to[address];
+        for (int i = 0; i < to[descriptor - 1]; i++)
+          if (to[descriptor - 2 - i] != 0) to[address - 1 - i] = forward(from, fromHp, to[address - 1 - i]);
+      }
+
+      toSpace = from;
+      gray = null;
+      long pause = System.nanoTime() - start;
+      gcCount++;
+      gcNanos += pause;
+      gcMaxNanos = Math.max(gcMaxNanos, pause);
+      gcReclaimed += fromHp - hp;
+      if (verboseGC)
+        System.err.printf("[GC #%d: %d -> %d words, %.3f ms]%n", gcCount, fromHp - heapBase, hp - heapBase, pause / 1e6);
+    }
+
+    private void forwardSlot(int[] from, int fromHp, int slot) {
+      stack[-slot] = forward(from, fromHp, stack[-slot]);
+    }
+
+    // new address of the object at address in from-space, copying it if not already done
+    // (a copied object is marked by the complement of its new address in place of its dispatch pointer)
+    private int forward(int[] from, int fromHp, int address) {
+      if (address < heapBase || address >= fromHp) return address; // null or not a collected object
+      if (from[address] < 0) return ~from[address];
+      int fields = from[from[address] - 1];
+      int copy = hp + fields;
+      System.arraycopy(from, address - fields, heap, hp, fields + 1);
+      hp = copy + 1;
+      from[address] = ~copy;
+      if (grayCount == gray.length) gray = Arrays.copyOf(gray, 2 * grayCount);
+      gray[grayCount++] = copy;
+      return copy;
+    }
+
+    // doubles a memory region (at least enough to contain index), within the overall memory limit
+    private int[] grow(int[] region, int index, int otherRegion, String name) {
+      long limit = (long) maxMemSize - otherRegion;
+      if (index >= limit)
+        throw new SVMException("Out of memory: " + name + " cannot grow beyond " + limit + " words (memory limit " + maxMemSize + ")");
+      return Arrays.copyOf(region, (int) Math.min(limit, Math.max(2L * region.length, index + 1L)));
+    }
+
+    // Same semantics as cpu(), but ip, sp, fp, hp, ra and tm are kept in locals and
+    // the top of the stack is cached in "tos": stack[-sp] is stale while the loop runs.
+    // Pushing on an empty stack spills the (meaningless) cached value in the guard word stack[0].
+    // Registers are written back to the fields only at print and halt (or if execution aborts).
+    public void cpuRegister() {
+      final int[] code = this.code;
+      int[] stack = this.stack, heap = this.heap; // refreshed whenever a region grows
+      int ip = this.ip, sp = this.sp, fp = this.fp, hp = this.hp, ra = this.ra, tm = this.tm;
+      int tos = stack[-sp];
+      int v1, v2, address;
+      try {
+        while ( true ) {
+          switch ( code[ip++] ) {
+            case Opcodes.PUSH :
+              stack[-sp] = tos;
+              if (-(--sp) == stack.length) stack = growStack();
+              tos = code[ip++];
+              break;
+            case Opcodes.POP :
+              tos = stack[-(++sp)];
+              break;
+            case Opcodes.ADD :
+              tos = stack[-(++sp)] + tos;
+              break;
+            case Opcodes.MULT :
+              tos = stack[-(++sp)] * tos;
+              break;
+            case Opcodes.DIV :
+              tos = stack[-(++sp)] / tos;
+              break;
+            case Opcodes.SUB :
+              tos = stack[-(++sp)] - tos;
+              break;
+            case Opcodes.STOREW :
+              v1 = stack[-(++sp)];
+              if (tos < 0) stack[-tos] = v1;
+              else {
+                if (tos >= heap.length) heap = growHeap(tos);
+                heap[tos] = v1;
+              }
+              tos = stack[-(++sp)];
+              break;
+            case Opcodes.LOADW :
+              tos = tos >= 0 ? heap[tos] : tos != NULL ? stack[-tos] : nullPointer();
+              break;
+            case Opcodes.BRANCH :
+              ip = code[ip];
+              break;
+            case Opcodes.BRANCHEQ :
+              address = code[ip++];
+              v2 = stack[-(++sp)];
+              v1 = tos;
+              tos = stack[-(++sp)];
+              if (v2 == v1) ip = address;
+              break;
+            case Opcodes.BRANCHLESSEQ :
+              address = code[ip++];
+              v2 = stack[-(++sp)];
+              v1 = tos;
+              tos = stack[-(++sp)];
+              if (v2 <= v1) ip = address;
+              break;
+            case Opcodes.JS :
+              address = tos;
+              tos = stack[-(++sp)];
+              ra = ip;
+              ip = address;
+              break;
+            case Opcodes.STORERA :
+              ra = tos;
+              tos = stack[-(++sp)];
+              break;
+            case Opcodes.LOADRA :
+              stack[-sp] = tos;
+              if (-(--sp) == stack.length) stack = growStack();
+              tos = ra;
+              break;
+            case Opcodes.STORETM :
+              tm = tos;
+              tos = stack[-(++sp)];
+              break;
+            case Opcodes.LOADTM :
+              stack[-sp] = tos;
+              if (-(--sp) == stack.length) stack = growStack();
+              tos = tm;
+              break;
+            case Opcodes.LOADFP :
+              stack[-sp] = tos;
+              if (-(--sp) == stack.length) stack = growStack();
+              tos = fp;
+              break;
+            case Opcodes.STOREFP :
+              fp = tos;
+              tos = stack[-(++sp)];
+              break;
+            case Opcodes.COPYFP :
+              fp = sp;
+              break;
+            case Opcodes.STOREHP :
+              hp = tos;
+              tos = stack[-(++sp)];
+              break;
+            case Opcodes.LOADHP :
+              stack[-sp] = tos;
+              if (-(--sp) == stack.length) stack = growStack();
+              tos = hp;
+              break;
+            case Opcodes.PRINT :
+              stack[-sp] = tos;
+              this.ip = ip; this.sp = sp; this.fp = fp; this.hp = hp; this.ra = ra; this.tm = tm;
+              if (sp < 0) output.println(tos);
+              else output.println("Empty stack!");
+              break;
+            case Opcodes.HALT :
+              return;
+            case Opcodes.NEW :
+              stack[-sp] = tos;
+              this.sp = sp; this.fp = fp; this.hp = hp;
+              newObject(ip - 1);
+              stack = this.stack; heap = this.heap; sp = this.sp; hp = this.hp;
+              tos = stack[-sp];
+              break;
+            case Opcodes.LOADVAR :
+              stack[-sp] = tos; // the variable may live in the cached slot
+              if (-(--sp) == stack.length) stack = growStack();
+              v1 = code[ip++];
+              address = fp;
+              for (int d = 0; d < v1; d++) address = address >= 0 ? heap[address] : address != NULL ? stack[-address] : nullPointer();
+              if (address == NULL) nullPointer(); // the Access Link of a method is its object
+              address += code[ip];
+              tos = address < 0 ? stack[-address] : heap[address];
+              ip += v1 + 3;
+              break;
+            case Opcodes.DISPLAYVAR :
+              stack[-sp] = tos;
+              if (-(--sp) == stack.length) stack = growStack();
+              address = stack[-code[ip]]; // the display and the frames are in the stack
+              if (address == NULL) nullPointer();
+              tos = stack[-(address + code[ip + 1])];
+              ip += 6;
+              break;
+            case Opcodes.DUP :
+              tm = tos;
+              stack[-sp] = tos;
+              if (-(--sp) == stack.length) stack = growStack();
+              ip += 2;
+              break;
+            case Opcodes.BUMPHP :
+              hp += code[ip];
+              ip += 4;
+              break;
+            case Opcodes.RETURN :
+              v1 = code[ip++];
+              v2 = code[ip++];
+              tm = tos;
+              address = stack[-(sp + 1 + v1)];
+              sp += 2 + v1 + v2;
+              fp = stack[-sp];
+              ra = ip + v1 + v2 + 3;
+              ip = address;
+              break;
+          }
+        }
+      } finally {
+        try { // sp is out of the stack after a push that could not grow it (tos already saved) or a pop past its base
+          if (sp <= 0 && -sp < this.stack.length) this.stack[-sp] = tos;
+          this.ip = ip; this.sp = sp; this.fp = fp; this.hp = hp; this.ra = ra; this.tm = tm;
+        } finally {
+          output.flush(); // what was printed before an error is kept
+        }
+      }
+    }
+
+    // Fast variant of cpuRegister() for programs that passed the Verifier: pushes do not check the stack size,
+    // which is checked only when a function is entered (by a call or a tail call), against the maximum depth the Verifier computed for it
+    // (allocations check the heap size as usual).
+    private void cpuFast() {
+      final int[] code = this.code;
+      int[] stack = this.stack, heap = this.heap; // refreshed whenever a region grows
+      int ip = this.ip, sp = this.sp, fp = this.fp, hp = this.hp, ra = this.ra, tm = this.tm;
+      final int[] frames = this.frames;
+      if (frames[ip] - sp >= stack.length) stack = growStack(frames[ip] - sp);
+      int tos = stack[-sp];
+      int v1, v2, address;
+      try {
+        while ( true ) {
+          switch ( code[ip++] ) {
+            case Opcodes.PUSH :
+              stack[-sp] = tos;
+              --sp;
+              tos = code[ip++];
+              break;
+            case Opcodes.POP :
+              tos = stack[-(++sp)];
+              break;
+            case Opcodes.ADD :
+              tos = stack[-(++sp)] + tos;
+              break;
+            case Opcodes.MULT :
+              tos = stack[-(++sp)] * tos;
+              break;
+            case Opcodes.DIV :
+              tos = stack[-(++sp)] / tos;
+              break;
+            case Opcodes.SUB :
+              tos = stack[-(++sp)] - tos;
+              break;
+            case Opcodes.STOREW :
+              v1 = stack[-(++sp)];
+              if (tos < 0) stack[-tos] = v1;
+              else {
+                if (tos >= heap.length) heap = growHeap(tos);
+                heap[tos] = v1;
+              }
+              tos = stack[-(++sp)];
+              break;
+            case Opcodes.LOADW :
+              tos = tos >= 0 ? heap[tos] : tos != NULL ? stack[-tos] : nullPointer();
+              break;
+            case Opcodes.BRANCH :
+              ip = code[ip];
+              if (frames[ip] - sp >= stack.length) stack = growStack(frames[ip] - sp); // 0 unless it is a tail call
+              break;
+            case Opcodes.BRANCHEQ :
+              address = code[ip++];
+              v2 = stack[-(++sp)];
+              v1 = tos;
+              tos = stack[-(++sp)];
+              if (v2 == v1) ip = address;
+              break;
+            case Opcodes.BRANCHLESSEQ :
+              address = code[ip++];
+              v2 = stack[-(++sp)];
+              v1 = tos;
+              tos = stack[-(++sp)];
+              if (v2 <= v1) ip = address;
+              break;
+            case Opcodes.JS :
+              address = tos;
+              tos = stack[-(++sp)];
+              ra = ip;
+              ip = address;
+              if (frames[ip] - sp >= stack.length) stack = growStack(frames[ip] - sp); // 0 unless it is a call
+              break;
+            case Opcodes.STORERA :
+              ra = tos;
+              tos = stack[-(++sp)];
+              break;
+            case Opcodes.LOADRA :
+              stack[-sp] = tos;
+              --sp;
+              tos = ra;
+              break;
+            case Opcodes.STORETM :
+              tm = tos;
+              tos = stack[-(++sp)];
+              break;
+            case Opcodes.LOADTM :
+              stack[-sp] = tos;
+              --sp;
+              tos = tm;
+              break;
+            case Opcodes.LOADFP :
+              stack[-sp] = tos;
+              --sp;
+              tos = fp;
+              break;
+            case Opcodes.STOREFP :
+              fp = tos;
+              tos = stack[-(++sp)];
+              break;
+            case Opcodes.COPYFP :
+              fp = sp;
+              break;
+            case Opcodes.STOREHP :
+              hp = tos;
+              tos = stack[-(++sp)];
+              break;
+            case Opcodes.LOADHP :
+              stack[-sp] = tos;
+              --sp;
+              tos = hp;
+              break;
+            case Opcodes.PRINT :
+              stack[-sp] = tos;
+              this.ip = ip; this.sp = sp; this.fp = fp; this.hp = hp; this.ra = ra; this.tm = tm;
+              if (sp < 0) output.println(tos);
+              else output.println("Empty stack!");
+              break;
+            case Opcodes.HALT :
+              return;
+            case Opcodes.NEW :
+              stack[-sp] = tos;
+              this.sp = sp; this.fp = fp; this.hp = hp;
+              newObject(ip - 1);
+              stack = this.stack; heap = this.heap; sp = this.sp; hp = this.hp;
+              tos = stack[-sp];
+              break;
+            case Opcodes.LOADVAR :
+              stack[-sp] = tos; // the variable may live in the cached slot
+              --sp;
+              v1 = code[ip++];
+              address = fp;
+              for (int d = 0; d < v1; d++) address = address >= 0 ? heap[address] : address != NULL ? stack[-address] : nullPointer();
+              if (address == NULL) nullPointer(); // the Access Link of a method is its object
+              address += code[ip];
+              tos = address < 0 ? stack[-address] : heap[address];
+              ip += v1 + 3;
+              break;
+            case Opcodes.DISPLAYVAR :
+              stack[-sp] = tos;
+              --sp;
+              address = stack[-code[ip]]; // the display and the frames are in the stack
+              if (address == NULL) nullPointer();
+              tos = stack[-(address + code[ip + 1])];
+              ip += 6;
+              break;
+            case Opcodes.DUP :
+              tm = tos;
+              stack[-sp] = tos;
+              --sp;
+              ip += 2;
+              break;
+            case Opcodes.BUMPHP :
+              hp += code[ip];
+              ip += 4;
+              break;
+            case Opcodes.RETURN :
+              v1 = code[ip++];
+              v2 = code[ip++];
+              tm = tos;
+              address = stack[-(sp + 1 + v1)];
+              sp += 2 + v1 + v2;
+              fp = stack[-sp];
+              ra = ip + v1 + v2 + 3;
+              ip = address;
+              break;
+          }
+        }
+      } finally {
+        try { // sp is out of the stack after a push that could not grow it (tos already saved) or a pop past its base
+          if (sp <= 0 && -sp < this.stack.length) this.stack[-sp] = tos;
+          this.ip = ip; this.sp = sp; this.fp = fp; this.hp = hp; this.ra = ra; this.tm = tm;
+        } finally {
+          output.flush(); // what was printed before an error is kept
+        }
+      }
+    }
+
+}
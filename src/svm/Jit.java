@@ -0,0 +1,310 @@
+package svm;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static svm.ClassFileWriter.*;
+import static svm.Opcodes.*;
+
+// Second tier of the SVM: functions (the code from a label made by CompilationContext.freshFunLabel() up to the next one)
+// that are entered "threshold" times are translated into JVM bytecode, one hidden class per function,
+// which HotSpot compiles like any other Java code.
+// Compiled code works on the same stack and heap of the VM and keeps the SVM calling convention:
+// a "js" leaves compiled code returning the target address, so that interpreted and compiled frames
+// interleave freely. Compiled code can be entered at the beginning of the function and at every return
+// address of the calls it makes; a branch to another function (a tail call) leaves compiled code as well.
+// Functions containing something that cannot be translated stay interpreted.
+class Jit {
+
+    // the compiled code of a function: runs from address ip up to the next "js", returns its target
+    interface Compiled {
+        int run(ExecuteVM vm, int ip);
+    }
+
+    private static final String VM = "svm/ExecuteVM";
+    // locals of the compiled method: registers of the SVM are cached there and written back at the exits
+    private static final int L_VM = 1, L_IP = 2, L_STACK = 3, L_SP = 4, L_FP = 5, L_HP = 6, L_RA = 7, L_TM = 8,
+            L_V1 = 9, L_V2 = 10;
+
+    private final ExecuteVM vm;
+    private final MethodHandles.Lookup lookup; // of ExecuteVM: compiled code is its nestmate
+    private final int[] code;
+    private final int threshold;
+    private final int[] functionEnds; // for each function entry, the end of its code (0 if not an entry)
+    private final int[] calls;
+    private final Compiled[] entries; // compiled code by entry address
+    private int compiled, rejected;
+
+    Jit(ExecuteVM vm, MethodHandles.Lookup lookup, int[] code, Collection<Integer> functionEntries, int threshold) {
+        this.vm = vm;
+        this.lookup = lookup;
+        this.code = code;
+        this.threshold = threshold;
+        this.functionEnds = new int[code.length];
+        this.calls = new int[code.length];
+        this.entries = new Compiled[code.length];
+        int[] sorted = functionEntries.stream().mapToInt(Integer::intValue).sorted().toArray();
+        for (int i = 0; i < sorted.length; i++)
+            functionEnds[sorted[i]] = i + 1 < sorted.length ? sorted[i + 1] : code.length;
+    }
+
+    String report() {
+        return "JIT: " + compiled + " functions compiled, " + rejected + " left to the interpreter (threshold " + threshold + ")";
+    }
+
+    // called by the interpreter after a jump to ip: runs compiled code as long as there is some for
+    // the target address, compiling functions as soon as they get hot; returns where to continue interpreting
+    int enter(int ip) {
+        while (true) {
+            Compiled c = entries[ip];
+            if (c == null) {
+                if (functionEnds[ip] == 0 || ++calls[ip] != threshold || (c = compile(ip)) == null) return ip;
+            }
+            ip = c.run(vm, ip);
+        }
+    }
+
+    private Compiled compile(int start) {
+        int end = functionEnds[start];
+        boolean[] instruction = new boolean[end - start];
+        List<Integer> entryPoints = new ArrayList<>(List.of(start));
+        for (int pc = start; pc < end; pc += Opcodes.length(code, pc)) {
+            instruction[pc - start] = true;
+            if (code[pc] == JS && pc + 1 < end) entryPoints.add(pc + 1); // return address
+        }
+        try {
+            byte[] bytes = translate(start, end, instruction, entryPoints);
+            var hidden = lookup.defineHiddenClass(bytes, true, MethodHandles.Lookup.ClassOption.NESTMATE);
+            var c = (Compiled) hidden.findConstructor(hidden.lookupClass(), MethodType.methodType(void.class)).invoke();
+            for (int entry : entryPoints) entries[entry] = c;
+            compiled++;
+            return c;
+        } catch (Throwable e) { // not translatable (or rejected by the JVM): keep interpreting
+            rejected++;
+            return null;
+        }
+    }
+
+    private byte[] translate(int start, int end, boolean[] instruction, List<Integer> entryPoints) {
+        var cw = new ClassFileWriter();
+        var init = new Code(1, 1);
+        init.op(ALOAD, 0).ref(INVOKESPECIAL, cw.methodRef("java/lang/Object", "<init>", "()V")).op(ClassFileWriter.RETURN);
+        cw.addMethod(ACC_PUBLIC, "<init>", "()V", init);
+
+        var m = new Code(8, 11);
+        var t = new Translator(cw, m);
+        Label[] labels = new Label[end - start];
+        for (int i = 0; i < labels.length; i++) if (instruction[i]) labels[i] = new Label();
+        Label unknown = new Label();
+
+        // prologue: load registers and jump to the entry point
+        m.op(ALOAD, L_VM).ref(GETFIELD, t.field("stack", "[I")).op(ASTORE, L_STACK);
+        for (String r : new String[] {"sp", "fp", "hp", "ra", "tm"})
+            m.op(ALOAD, L_VM).ref(GETFIELD, t.field(r, "I")).op(ISTORE, t.local(r));
+        int[] keys = entryPoints.stream().mapToInt(Integer::intValue).sorted().toArray();
+        Label[] targets = Arrays.stream(keys).mapToObj(k -> labels[k - start]).toArray(Label[]::new);
+        m.op(ILOAD, L_IP).lookupswitch(keys, targets, unknown);
+        m.bind(unknown);
+        m.op(ILOAD, L_IP).op(IRETURN);
+
+        int pc;
+        for (pc = start; pc < end; pc += Opcodes.length(code, pc)) {
+            m.bind(labels[pc - start]);
+            int next = pc + Opcodes.length(code, pc);
+            switch (code[pc]) {
+                case PUSH -> {
+                    m.pushInt(cw, code[pc + 1]).op(ISTORE, L_V1);
+                    t.push(L_V1);
+                }
+                case POP -> m.iinc(L_SP, 1);
+                case ADD -> t.binary(IADD);
+                case SUB -> t.binary(ISUB);
+                case MULT -> t.binary(IMUL);
+                case DIV -> t.binary(IDIV);
+                case STOREW -> {
+                    t.pop();
+                    m.op(ISTORE, L_V2); // address
+                    t.pop();
+                    m.op(ISTORE, L_V1);
+                    m.op(ALOAD, L_VM).op(ILOAD, L_V2).op(ILOAD, L_V1).ref(INVOKEVIRTUAL, t.method("store", "(II)V"));
+                }
+                case LOADW -> { // replaces the top of the stack
+                    m.op(ALOAD, L_STACK).op(ILOAD, L_SP).op(INEG);
+                    m.op(ALOAD, L_VM).op(ALOAD, L_STACK).op(ILOAD, L_SP).op(INEG).op(IALOAD)
+                            .ref(INVOKEVIRTUAL, t.method("load", "(I)I"));
+                    m.op(IASTORE);
+                }
+                case BRANCH -> {
+                    if (code[pc + 1] >= start && code[pc + 1] < end) m.branch(GOTO, t.target(labels, start, code[pc + 1]));
+                    else { // a tail call of another function, which may be compiled on its own
+                        m.pushInt(cw, code[pc + 1]).op(ISTORE, L_V1);
+                        t.exit(L_V1);
+                    }
+                }
+                case BRANCHEQ, BRANCHLESSEQ -> {
+                    t.pop();
+                    m.op(ISTORE, L_V1);
+                    t.pop();
+                    m.op(ILOAD, L_V1);
+                    m.branch(code[pc] == BRANCHEQ ? IF_ICMPEQ : IF_ICMPLE, t.target(labels, start, code[pc + 1]));
+                }
+                case JS -> {
+                    t.pop();
+                    m.op(ISTORE, L_V1);
+                    m.pushInt(cw, next).op(ISTORE, L_RA);
+                    t.exit(L_V1);
+                }
+                case LOADRA -> t.push(L_RA);
+                case STORERA -> { t.pop(); m.op(ISTORE, L_RA); }
+                case LOADTM -> t.push(L_TM);
+                case STORETM -> { t.pop(); m.op(ISTORE, L_TM); }
+                case LOADFP -> t.push(L_FP);
+                case STOREFP -> { t.pop(); m.op(ISTORE, L_FP); }
+                case COPYFP -> m.op(ILOAD, L_SP).op(ISTORE, L_FP);
+                case LOADHP -> t.push(L_HP);
+                case STOREHP -> { t.pop(); m.op(ISTORE, L_HP); }
+                case PRINT -> {
+                    m.op(ALOAD, L_VM).op(ILOAD, L_SP).ref(PUTFIELD, t.field("sp", "I"));
+                    m.op(ALOAD, L_VM).ref(INVOKEVIRTUAL, t.method("print", "()V"));
+                }
+                case NEW -> { // may grow the stack and move the heap
+                    t.sync();
+                    m.op(ALOAD, L_VM).pushInt(cw, pc).ref(INVOKEVIRTUAL, t.method("newObject", "(I)V"));
+                    m.op(ALOAD, L_VM).ref(GETFIELD, t.field("stack", "[I")).op(ASTORE, L_STACK);
+                    m.op(ALOAD, L_VM).ref(GETFIELD, t.field("sp", "I")).op(ISTORE, L_SP);
+                    m.op(ALOAD, L_VM).ref(GETFIELD, t.field("hp", "I")).op(ISTORE, L_HP);
+                }
+                case LOADVAR -> {
+                    m.op(ILOAD, L_FP).op(ISTORE, L_V1);
+                    for (int d = 0; d < code[pc + 1]; d++)
+                        m.op(ALOAD, L_VM).op(ILOAD, L_V1).ref(INVOKEVIRTUAL, t.method("load", "(I)I")).op(ISTORE, L_V1);
+                    m.op(ALOAD, L_VM).op(ILOAD, L_V1).pushInt(cw, code[pc + 2])
+                            .ref(INVOKEVIRTUAL, t.method("load", "(II)I")).op(ISTORE, L_V1);
+                    t.push(L_V1);
+                }
+                case DISPLAYVAR -> {
+                    m.op(ALOAD, L_VM).op(ALOAD, L_VM).pushInt(cw, code[pc + 1]).ref(INVOKEVIRTUAL, t.method("load", "(I)I"))
+                            .pushInt(cw, code[pc + 2]).ref(INVOKEVIRTUAL, t.method("load", "(II)I")).op(ISTORE, L_V1);
+                    t.push(L_V1);
+                }
+                case Opcodes.DUP -> {
+                    m.op(ALOAD, L_STACK).op(ILOAD, L_SP).op(INEG).op(IALOAD).op(ISTORE, L_TM);
+                    t.push(L_TM);
+                }
+                case BUMPHP -> t.add(L_HP, code[pc + 1]);
+                case Opcodes.RETURN -> {
+                    t.pop();
+                    m.op(ISTORE, L_TM);
+                    t.add(L_SP, code[pc + 1]); // locals
+                    t.pop();
+                    m.op(ISTORE, L_V1); // return address
+                    t.add(L_SP, code[pc + 2]); // Access Link and parameters
+                    t.pop();
+                    m.op(ISTORE, L_FP);
+                    t.push(L_TM);
+                    m.pushInt(cw, next).op(ISTORE, L_RA);
+                    t.exit(L_V1);
+                }
+                default -> throw new IllegalStateException("Cannot translate " + Opcodes.name(code[pc]));
+            }
+        }
+        // falling off the end of the function: continue wherever the code goes
+        m.pushInt(cw, pc).op(ISTORE, L_V1);
+        t.exit(L_V1);
+
+        List<Label> all = new ArrayList<>(List.of(unknown));
+        for (Label l : labels) if (l != null) all.add(l);
+        m.resolve(all);
+        if (m.length() > 32000) throw new IllegalStateException("Function too big");
+        cw.addMethod(ACC_PUBLIC, "run", "(L" + VM + ";I)I", m);
+        return cw.toBytes("svm/JitFunction" + start, "java/lang/Object", "svm/Jit$Compiled");
+    }
+
+    // bytecode snippets for the SVM stack and registers
+    private static class Translator {
+        private final ClassFileWriter cw;
+        private final Code m;
+
+        Translator(ClassFileWriter cw, Code m) {
+            this.cw = cw;
+            this.m = m;
+        }
+
+        int field(String name, String descriptor) {
+            return cw.fieldRef(VM, name, descriptor);
+        }
+
+        int method(String name, String descriptor) {
+            return cw.methodRef(VM, name, descriptor);
+        }
+
+        int local(String register) {
+            return switch (register) {
+                case "sp" -> L_SP;
+                case "fp" -> L_FP;
+                case "hp" -> L_HP;
+                case "ra" -> L_RA;
+                default -> L_TM;
+            };
+        }
+
+        Label target(Label[] labels, int start, int address) {
+            int i = address - start;
+            if (i < 0 || i >= labels.length || labels[i] == null)
+                throw new IllegalStateException("Branch out of the function");
+            return labels[i];
+        }
+
+        // pushes the value of a local, growing the stack if needed
+        void push(int local) {
+            var ok = new Label();
+            m.iinc(L_SP, -1);
+            m.op(ILOAD, L_SP).op(INEG).op(ALOAD, L_STACK).op(ARRAYLENGTH).branch(IF_ICMPNE, ok);
+            m.op(ALOAD, L_VM).ref(INVOKEVIRTUAL, method("growStack", "()[I")).op(ASTORE, L_STACK);
+            m.bind(ok);
+            m.op(ALOAD, L_STACK).op(ILOAD, L_SP).op(INEG).op(ILOAD, local).op(IASTORE);
+            m.resolve(List.of(ok));
+        }
+
+        // pops the top of the stack onto the operand stack of the JVM
+        void pop() {
+            m.op(ALOAD, L_STACK).op(ILOAD, L_SP).op(INEG).op(IALOAD).iinc(L_SP, 1);
+        }
+
+        // replaces the two values on top of the stack v1 (top) and v2 with "v2 op v1"
+        void binary(int op) {
+            m.op(ALOAD, L_STACK).op(ILOAD, L_SP).pushInt(cw, 1).op(IADD).op(INEG).op(DUP2).op(IALOAD);
+            m.op(ALOAD, L_STACK).op(ILOAD, L_SP).op(INEG).op(IALOAD);
+            m.op(op).op(IASTORE).iinc(L_SP, 1);
+        }
+
+        void add(int local, int delta) {
+            if (delta >= -128 && delta <= 127) m.iinc(local, delta);
+            else m.op(ILOAD, local).pushInt(cw, delta).op(IADD).op(ISTORE, local);
+        }
+
+        // writes the registers back to the VM
+        void sync() {
+            for (int r : new int[] {L_SP, L_FP, L_HP, L_RA, L_TM}) {
+                String name = switch (r) {
+                    case L_SP -> "sp";
+                    case L_FP -> "fp";
+                    case L_HP -> "hp";
+                    case L_RA -> "ra";
+                    default -> "tm";
+                };
+                m.op(ALOAD, L_VM).op(ILOAD, r).ref(PUTFIELD, field(name, "I"));
+            }
+        }
+
+        // leaves compiled code, continuing at the address in the given local
+        void exit(int local) {
+            sync();
+            m.op(ILOAD, local).op(IRETURN);
+        }
+    }
+}
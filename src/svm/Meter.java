@@ -0,0 +1,74 @@
+package svm;
+
+// Counts the instructions executed by an ExecuteVM and enforces an instruction quota and a deadline.
+// The loop is not slowed down by counting: instructions are accounted only at taken jumps, as the length
+// (in instructions) of the straight-line run that ended there, through the index of each code address.
+// Limits are checked only at backward branches and at "js" (calls and returns), which is enough since
+// any loop of a program goes through one of them.
+class Meter {
+
+    private final int[] index; // number of instruction starts before each code address (shared by the VMs)
+    private final long quota; // instructions
+    private final long deadline; // System.nanoTime()
+    private int segment; // start of the current straight-line run
+    private long executed;
+
+    Meter(int[] index, long quota, long deadline) {
+        this.index = index;
+        this.quota = quota;
+        this.deadline = deadline;
+    }
+
+    // index of the instructions of a (fused, see Superinstructions) program
+    static int[] index(int[] code) {
+        int[] index = new int[code.length + 1];
+        int count = 0;
+        for (int pc = 0; pc < code.length; ) {
+            int next = Math.min(pc + Opcodes.length(code, pc), code.length);
+            index[pc] = count++;
+            for (int i = pc + 1; i <= next; i++) index[i] = count;
+            pc = next;
+        }
+        return index;
+    }
+
+    // a jump to "to" taken by the instruction ending at "from"
+    void jump(int from, int to) {
+        executed += index[from] - index[segment];
+        segment = to;
+        if (to < from) check();
+    }
+
+    // a "js" to "to" executed by the instruction ending at "from"
+    void call(int from, int to) {
+        executed += index[from] - index[segment];
+        segment = to;
+        check();
+    }
+
+    // the "halt" ending at "from"
+    void halt(int from) {
+        executed += index[from] - index[segment];
+        segment = from;
+    }
+
+    long executed() {
+        return executed;
+    }
+
+    private void check() {
+        if (executed > quota) throw new LimitExceededException("Instruction quota of " + quota + " exceeded", false);
+        if (System.nanoTime() - deadline > 0 || Thread.currentThread().isInterrupted())
+            throw new LimitExceededException("Time limit exceeded", true);
+    }
+
+    static class LimitExceededException extends SVMException {
+        private static final long serialVersionUID = 1L;
+        final boolean timeout;
+
+        LimitExceededException(String message, boolean timeout) {
+            super(message);
+            this.timeout = timeout;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package svm;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Mines the most frequent instruction n-grams of a set of assembled programs (.svmo files),
+// which are the candidates for new superinstructions (see Superinstructions).
+// N-grams never cross a label, since a sequence containing a branch target cannot be fused.
+// Candidates are ranked by the number of dispatches they would save: occurrences * (n-1).
+//
+// Usage: java svm.NGramMiner [-n maxLength] [-top count] file.svmo ...
+public class NGramMiner {
+
+    public static void main(String[] args) throws Exception {
+        int maxN = 6, top = 20;
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-n" -> maxN = Integer.parseInt(args[++i]);
+                case "-top" -> top = Integer.parseInt(args[++i]);
+                default -> files.add(Path.of(args[i]));
+            }
+        }
+        if (files.isEmpty()) {
+            System.out.println("Usage: java svm.NGramMiner [-n maxLength] [-top count] file.svmo ...");
+            System.exit(1);
+        }
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (Path file : files) {
+            ObjectFile obj = ObjectFile.load(file);
+            mine(obj.code, new HashSet<>(obj.symbols.values()), maxN, counts);
+        }
+
+        System.out.println("saved  count  n-gram");
+        counts.entrySet().stream()
+                .sorted((a, b) -> saved(b) - saved(a))
+                .limit(top)
+                .forEach(e -> System.out.printf("%5d  %5d  %s%n", saved(e), e.getValue(), e.getKey()));
+    }
+
+    static void mine(int[] code, Set<Integer> labels, int maxN, Map<String, Integer> counts) {
+        // decode the instruction stream, splitting it in label-free blocks
+        List<String> block = new ArrayList<>();
+        for (int pc = 0; pc < code.length; pc += Opcodes.length(code, pc)) {
+            if (labels.contains(pc)) {
+                count(block, maxN, counts);
+                block.clear();
+            }
+            block.add(Opcodes.name(code[pc]));
+        }
+        count(block, maxN, counts);
+    }
+
+    private static void count(List<String> block, int maxN, Map<String, Integer> counts) {
+        for (int i = 0; i < block.size(); i++)
+            for (int n = 2; n <= maxN && i + n <= block.size(); n++)
+                counts.merge(String.join(" ", block.subList(i, i + n)), 1, Integer::sum);
+    }
+
+    private static int saved(Map.Entry<String, Integer> e) {
+        return e.getValue() * e.getKey().split(" ").length - e.getValue();
+    }
+}
@@ -0,0 +1,103 @@
+package svm;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Binary object format of an assembled SVM program.
+// Layout (big endian, one int = 4 bytes):
+//   header:       magic "SVMO", format version, code length (in words), number of symbols
+//   opcode stream: code length ints (opcodes from Opcodes and their operands, labels already resolved)
+//   symbol table:  for each label its address and its name (length in bytes followed by ASCII bytes)
+//   root maps:     number of maps, then for each GC point its address, the Control Link offset, the number
+//                  of slots and the offsets of the pointer slots (count followed by offsets), see RootMap
+// Loading maps the file in memory and never touches the ANTLR assembler.
+public class ObjectFile {
+
+    public static final int MAGIC = 0x53564D4F; // "SVMO"
+    public static final int VERSION = 3;
+
+    public final int[] code;
+    public final Map<String, Integer> symbols; // label -> code address
+    public final Map<Integer, RootMap> rootMaps; // GC point address -> frame layout
+
+    public ObjectFile(int[] code, Map<String, Integer> symbols, Map<Integer, RootMap> rootMaps) {
+        this.code = code;
+        this.symbols = Collections.unmodifiableMap(symbols);
+        this.rootMaps = Collections.unmodifiableMap(rootMaps);
+    }
+
+    public static void write(Path path, int[] code, int length, Map<String, Integer> symbols,
+                             Map<Integer, RootMap> rootMaps) throws IOException {
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(length);
+            out.writeInt(symbols.size());
+            for (int i = 0; i < length; i++) out.writeInt(code[i]);
+            for (var s : symbols.entrySet()) {
+                byte[] name = s.getKey().getBytes(StandardCharsets.US_ASCII);
+                out.writeInt(s.getValue());
+                out.writeInt(name.length);
+                out.write(name);
+            }
+            out.writeInt(rootMaps.size());
+            for (var m : rootMaps.entrySet()) {
+                out.writeInt(m.getKey());
+                out.writeInt(m.getValue().clOffset);
+                out.writeInt(m.getValue().slots);
+                out.writeInt(m.getValue().pointers.length);
+                for (int offset : m.getValue().pointers) out.writeInt(offset);
+            }
+        }
+    }
+
+    public static ObjectFile load(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buf.remaining() < 16 || buf.getInt() != MAGIC)
+                throw new IOException(path + " is not an SVM object file");
+            int version = buf.getInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported SVM object file version " + version);
+            int length = buf.getInt();
+            int symbolCount = buf.getInt();
+            int[] code = new int[length];
+            buf.asIntBuffer().get(code); // bulk copy of the opcode stream
+            buf.position(buf.position() + length * Integer.BYTES);
+            Map<String, Integer> symbols = new LinkedHashMap<>();
+            for (int i = 0; i < symbolCount; i++) {
+                int address = buf.getInt();
+                symbols.put(readName(buf), address);
+            }
+            int mapCount = buf.getInt();
+            Map<Integer, RootMap> rootMaps = new HashMap<>();
+            for (int i = 0; i < mapCount; i++) {
+                int address = buf.getInt();
+                int clOffset = buf.getInt();
+                int slots = buf.getInt();
+                int[] pointers = new int[buf.getInt()];
+                for (int j = 0; j < pointers.length; j++) pointers[j] = buf.getInt();
+                rootMaps.put(address, new RootMap(clOffset, slots, pointers));
+            }
+            return new ObjectFile(code, symbols, rootMaps);
+        }
+    }
+
+    private static String readName(ByteBuffer buf) {
+        byte[] name = new byte[buf.getInt()];
+        buf.get(name);
+        return new String(name, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,79 @@
+package svm;
+
+// Numeric opcodes of the SVM instruction set.
+// They are fixed here (and no longer taken from the ANTLR token types of SVMParser)
+// so that binary object files stay valid whenever the grammar changes
+// and so that the VM can run without loading any ANTLR class.
+public class Opcodes {
+
+    public static final int PUSH = 1;
+    public static final int POP = 2;
+    public static final int ADD = 3;
+    public static final int SUB = 4;
+    public static final int MULT = 5;
+    public static final int DIV = 6;
+    public static final int STOREW = 7;
+    public static final int LOADW = 8;
+    public static final int BRANCH = 9;
+    public static final int BRANCHEQ = 10;
+    public static final int BRANCHLESSEQ = 11;
+    public static final int JS = 12;
+    public static final int LOADRA = 13;
+    public static final int STORERA = 14;
+    public static final int LOADTM = 15;
+    public static final int STORETM = 16;
+    public static final int LOADFP = 17;
+    public static final int STOREFP = 18;
+    public static final int COPYFP = 19;
+    public static final int LOADHP = 20;
+    public static final int STOREHP = 21;
+    public static final int PRINT = 22;
+    public static final int HALT = 23;
+
+    // Superinstructions: never produced by the assembler, they are introduced at load time
+    // by Superinstructions.fuse() in place of the sequence they replace (see that class).
+    public static final int LOADVAR = 24; // lfp, lw x depth, push offset, add, lw
+    public static final int DUP = 25;     // stm, ltm, ltm
+    public static final int BUMPHP = 26;  // lhp, push n, add, shp
+    public static final int RETURN = 27;  // stm, pop x locals, sra, pop x (1 + params), sfp, ltm, lra, js
+
+    public static final int NEW = 28; // allocates an object (the heap is garbage collected, see ExecuteVM)
+
+    public static final int DISPLAYVAR = 29; // superinstruction: push entry, lw, push offset, add, lw
+
+    // assembly mnemonics, indexed by opcode (0 is not a valid opcode)
+    private static final String[] NAMES = {
+            null, "push", "pop", "add", "sub", "mult", "div", "sw", "lw", "b", "beq", "bleq", "js",
+            "lra", "sra", "ltm", "stm", "lfp", "sfp", "cfp", "lhp", "shp", "print", "halt",
+            "LOADVAR", "DUP", "BUMPHP", "RETURN", "new", "DISPLAYVAR"
+    };
+
+    public static boolean isValid(int op) {
+        return op > 0 && op < NAMES.length && NAMES[op] != null;
+    }
+
+    public static String name(int op) {
+        return isValid(op) ? NAMES[op] : "?" + op;
+    }
+
+    // number of operand words following the opcode in the code array (plain instructions only)
+    public static int operands(int op) {
+        return switch (op) {
+            case PUSH, BRANCH, BRANCHEQ, BRANCHLESSEQ -> 1;
+            default -> 0;
+        };
+    }
+
+    // number of code words taken by the instruction starting at code[pc],
+    // superinstructions included (they span the whole sequence they replaced)
+    public static int length(int[] code, int pc) {
+        return switch (code[pc]) {
+            case LOADVAR -> code[pc + 1] + 5;
+            case DUP -> 3;
+            case BUMPHP -> 5;
+            case DISPLAYVAR -> 7;
+            case RETURN -> code[pc + 1] + code[pc + 2] + 6;
+            default -> 1 + operands(code[pc]);
+        };
+    }
+}
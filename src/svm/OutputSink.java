@@ -0,0 +1,87 @@
+package svm;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+// Destination of the lines written by the "print" instruction.
+// The VM flushes it when the program halts and when execution aborts.
+public interface OutputSink {
+
+    void println(int value);
+
+    void println(String line);
+
+    default void flush() {
+    }
+
+    // lines are buffered and written to the stream only when the buffer is full or at flush()
+    static OutputSink buffered(OutputStream out) {
+        return new Buffered(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.US_ASCII), 1 << 16));
+    }
+
+    // lines are kept in memory, see Capture.text()
+    static Capture capture() {
+        return new Capture();
+    }
+
+    // lines are thrown away (for benchmarks)
+    static OutputSink discard() {
+        return new OutputSink() {
+            public void println(int value) {
+            }
+
+            public void println(String line) {
+            }
+        };
+    }
+
+    class Buffered implements OutputSink {
+        private final Writer out;
+
+        Buffered(Writer out) {
+            this.out = out;
+        }
+
+        public void println(int value) {
+            println(Integer.toString(value));
+        }
+
+        public void println(String line) {
+            try {
+                out.write(line);
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        public void flush() {
+            try {
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    class Capture implements OutputSink {
+        private final StringBuilder text = new StringBuilder();
+
+        public void println(int value) {
+            text.append(value).append('\n');
+        }
+
+        public void println(String line) {
+            text.append(line).append('\n');
+        }
+
+        public String text() {
+            return text.toString();
+        }
+    }
+}
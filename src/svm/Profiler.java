@@ -0,0 +1,169 @@
+package svm;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+// Execution profile collected by ExecuteVM.profile(): how many times each instruction ran and,
+// for each function (the code from a "function" label of FOOLlib up to the next one, "main" before
+// the first one), its calls, exclusive and inclusive instruction counts and the maximum stack depth
+// (in words) reached while it was running.
+// A "js" to a function label is a call, any other "js" is a return; a "b" to a function label
+// is a tail call, which ends the activation of the caller.
+public class Profiler {
+
+    private final int[] code;
+    private final String[] names; // of the functions, "main" first
+    private final int[] starts;
+    private final int[] owner; // function index of each code address
+    private final boolean[] entry;
+
+    private final long[] executed; // by code address
+    private final int[] maxStack; // by function
+    private final long[] calls, inclusive;
+    private final int[] active; // activations of each function on the call stack
+    private long total; // instructions executed so far
+
+    // call stack: function index and instructions executed before the call
+    private int[] callFunction = new int[64];
+    private long[] callStart = new long[64];
+    private int depth;
+
+    Profiler(int[] code, Map<String, Integer> symbols) {
+        this.code = code;
+        var functions = new ArrayList<>(symbols.entrySet().stream()
+                .filter(s -> s.getKey().startsWith("function"))
+                .sorted(Map.Entry.comparingByValue()).toList());
+        int n = functions.size() + 1;
+        names = new String[n];
+        starts = new int[n];
+        names[0] = "main";
+        for (int i = 1; i < n; i++) {
+            names[i] = functions.get(i - 1).getKey();
+            starts[i] = functions.get(i - 1).getValue();
+        }
+        owner = new int[code.length];
+        entry = new boolean[code.length];
+        for (int i = 0; i < n; i++) {
+            int end = i + 1 < n ? starts[i + 1] : code.length;
+            Arrays.fill(owner, starts[i], end, i);
+            if (i > 0) entry[starts[i]] = true;
+        }
+        executed = new long[code.length];
+        maxStack = new int[n];
+        calls = new long[n];
+        inclusive = new long[n];
+        active = new int[n];
+        active[0] = 1;
+    }
+
+    // to be called before executing the instruction at pc
+    void step(int pc, int sp) {
+        executed[pc]++;
+        total++;
+        int f = owner[pc];
+        if (-sp > maxStack[f]) maxStack[f] = -sp;
+    }
+
+    // to be called right after a "js" to target, when the instruction count is known
+    void jump(int target) {
+        if (entry[target]) {
+            if (depth == callFunction.length) {
+                callFunction = Arrays.copyOf(callFunction, 2 * depth);
+                callStart = Arrays.copyOf(callStart, 2 * depth);
+            }
+            int f = owner[target];
+            calls[f]++;
+            active[f]++;
+            callFunction[depth] = f;
+            callStart[depth++] = total;
+        } else if (depth > 0) {
+            exit();
+        }
+    }
+
+    // to be called right after a "b" to target
+    void branch(int target) {
+        if (entry[target]) {
+            if (depth > 0) exit();
+            jump(target);
+        }
+    }
+
+    // to be called when the program halts: closes the activations still open
+    void halt() {
+        while (depth > 0) exit();
+        calls[0] = 1;
+        inclusive[0] = total;
+    }
+
+    private void exit() {
+        int f = callFunction[--depth];
+        // recursive activations are accounted only once, by the outermost one
+        if (--active[f] == 0) inclusive[f] += total - callStart[depth];
+    }
+
+    public long[] opcodeCounts() {
+        long[] counts = new long[Opcodes.DISPLAYVAR + 1];
+        for (int pc = 0; pc < code.length; pc++)
+            if (executed[pc] > 0) counts[code[pc]] += executed[pc];
+        return counts;
+    }
+
+    private long[] exclusive() {
+        long[] exclusive = new long[names.length];
+        for (int pc = 0; pc < code.length; pc++) exclusive[owner[pc]] += executed[pc];
+        return exclusive;
+    }
+
+    public String report() {
+        var sb = new StringBuilder();
+        long[] ops = opcodeCounts();
+        sb.append(String.format("Instructions executed: %d%n%n", total));
+        sb.append(String.format("%-10s %12s %7s%n", "opcode", "count", "%"));
+        List<Integer> order = new ArrayList<>();
+        for (int op = 0; op < ops.length; op++) if (ops[op] > 0) order.add(op);
+        order.sort(Comparator.comparingLong(op -> -ops[op]));
+        for (int op : order)
+            sb.append(String.format("%-10s %12d %6.2f%%%n", Opcodes.name(op), ops[op], 100.0 * ops[op] / total));
+
+        long[] exclusive = exclusive();
+        sb.append(String.format("%n%-14s %8s %10s %12s %12s %9s%n",
+                "function", "address", "calls", "inclusive", "exclusive", "maxStack"));
+        List<Integer> functions = new ArrayList<>();
+        for (int f = 0; f < names.length; f++) if (calls[f] > 0) functions.add(f);
+        functions.sort(Comparator.comparingLong(f -> -inclusive[f]));
+        for (int f : functions)
+            sb.append(String.format("%-14s %8d %10d %12d %12d %9d%n",
+                    names[f], starts[f], calls[f], inclusive[f], exclusive[f], maxStack[f]));
+        return sb.toString();
+    }
+
+    public void writeJson(Path path) throws IOException {
+        long[] ops = opcodeCounts();
+        long[] exclusive = exclusive();
+        var sb = new StringBuilder();
+        sb.append("{\n  \"instructions\": ").append(total).append(",\n  \"opcodes\": {");
+        String sep = "";
+        for (int op = 0; op < ops.length; op++)
+            if (ops[op] > 0) {
+                sb.append(sep).append("\n    \"").append(Opcodes.name(op)).append("\": ").append(ops[op]);
+                sep = ",";
+            }
+        sb.append("\n  },\n  \"functions\": [");
+        sep = "";
+        for (int f = 0; f < names.length; f++) {
+            sb.append(sep).append(String.format(
+                    "\n    {\"label\": \"%s\", \"address\": %d, \"calls\": %d, \"inclusive\": %d, \"exclusive\": %d, \"maxStack\": %d}",
+                    names[f], starts[f], calls[f], inclusive[f], exclusive[f], maxStack[f]));
+            sep = ",";
+        }
+        sb.append("\n  ]\n}\n");
+        Files.writeString(path, sb.toString());
+    }
+}
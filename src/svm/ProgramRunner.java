@@ -0,0 +1,142 @@
+package svm;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+// Runs many compiled programs concurrently in the same JVM, each one with its own ExecuteVM
+// (the code arrays, read-only once fused, are shared by all the runs of a program).
+// At most "parallelism" programs run at the same time, each one within an instruction quota
+// and a time limit; results, with the captured output, come back as futures and no error
+// of a program ever terminates the JVM.
+// Programs run on virtual threads when the JVM has them (Java 21 and later), on a pool of
+// "parallelism" platform threads otherwise.
+//
+// Usage: java svm.ProgramRunner [-parallelism n] [-quota instructions] [-timeout millis] file.svmo ...
+public class ProgramRunner implements AutoCloseable {
+
+    public enum Status { HALTED, FAILED, QUOTA_EXCEEDED, TIMED_OUT }
+
+    public record Limits(long maxInstructions, Duration timeout) {
+        public static final Limits NONE = new Limits(Long.MAX_VALUE, Duration.ofDays(365));
+    }
+
+    public record Result(String name, Status status, String output, String error, long instructions, Duration elapsed) {
+    }
+
+    // a program ready to be run any number of times, concurrently
+    public static final class Program {
+        final String name;
+        final int[] code;
+        final Map<Integer, RootMap> rootMaps;
+        final int[] index; // see Meter
+
+        public Program(String name, ObjectFile obj) {
+            this.name = name;
+            this.code = obj.code;
+            this.rootMaps = obj.rootMaps;
+            Superinstructions.fuse(code, code.length, obj.symbols.values());
+            this.index = Meter.index(code);
+        }
+    }
+
+    private final ExecutorService executor;
+    private final Semaphore permits;
+
+    public ProgramRunner(int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("Invalid parallelism " + parallelism);
+        this.permits = new Semaphore(parallelism);
+        this.executor = newExecutor(parallelism);
+    }
+
+    private static ExecutorService newExecutor(int parallelism) {
+        try { // virtual threads: looked up reflectively, the code base targets Java 17
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(parallelism);
+        }
+    }
+
+    public CompletableFuture<Result> submit(Program program, Limits limits) {
+        return submit(program, limits, null);
+    }
+
+    // the output of the program goes to sink while it runs (and Result.output is empty), if sink is not null
+    public CompletableFuture<Result> submit(Program program, Limits limits, OutputSink sink) {
+        return CompletableFuture.supplyAsync(() -> {
+            permits.acquireUninterruptibly();
+            try {
+                return run(program, limits, sink);
+            } finally {
+                permits.release();
+            }
+        }, executor);
+    }
+
+    public List<CompletableFuture<Result>> submitAll(List<Program> programs, Limits limits) {
+        List<CompletableFuture<Result>> results = new ArrayList<>();
+        for (Program p : programs) results.add(submit(p, limits));
+        return results;
+    }
+
+    private static Result run(Program program, Limits limits, OutputSink sink) {
+        long start = System.nanoTime();
+        var output = OutputSink.capture();
+        var vm = new ExecuteVM(program.code, program.rootMaps);
+        var meter = new Meter(program.index, limits.maxInstructions(),
+                start + Math.min(limits.timeout().toNanos(), Long.MAX_VALUE / 4));
+        vm.setOutput(sink != null ? sink : output);
+        vm.setMeter(meter);
+        Status status = Status.HALTED;
+        String error = null;
+        try {
+            vm.cpu();
+        } catch (Meter.LimitExceededException e) {
+            status = e.timeout ? Status.TIMED_OUT : Status.QUOTA_EXCEEDED;
+            error = e.getMessage();
+        } catch (RuntimeException | StackOverflowError e) { // SVMException, division by zero, bad addresses...
+            status = Status.FAILED;
+            error = e.toString();
+        }
+        return new Result(program.name, status, output.text(), error, meter.executed(),
+                Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        long quota = Long.MAX_VALUE;
+        Duration timeout = Limits.NONE.timeout();
+        List<Program> programs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-parallelism" -> parallelism = Integer.parseInt(args[++i]);
+                case "-quota" -> quota = Long.parseLong(args[++i]);
+                case "-timeout" -> timeout = Duration.ofMillis(Long.parseLong(args[++i]));
+                default -> programs.add(new Program(args[i], ObjectFile.load(Path.of(args[i]))));
+            }
+        }
+        if (programs.isEmpty()) {
+            System.out.println("Usage: java svm.ProgramRunner [-parallelism n] [-quota instructions] [-timeout millis] file.svmo ...");
+            System.exit(1);
+        }
+        try (var runner = new ProgramRunner(parallelism)) {
+            for (var future : runner.submitAll(programs, new Limits(quota, timeout))) {
+                Result r = future.get();
+                System.out.printf("%s: %s, %d instructions, %d ms%s%n", r.name(), r.status(), r.instructions(),
+                        r.elapsed().toMillis(), r.error() == null ? "" : " (" + r.error() + ")");
+                System.out.print(r.output());
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package svm;
+
+// Layout of a stack frame at a garbage collection point (a "new" instruction or a return address),
+// produced by the compiler and used by the collector to find the object pointers on the stack
+// (and by the Verifier to know the stack depth after a call).
+// Offsets are relative to the frame pointer $fp of the frame:
+//   $fp+1 .. $fp+n  parameters, $fp+n+1 Control Link
+//   $fp             Access Link (an object pointer for methods)
+//   $fp-1           return address
+//   $fp-2 ...       local declarations, then temporaries
+public class RootMap {
+
+    public final int clOffset;   // offset of the Control Link, 0 for the global frame (the bottom one)
+    public final int slots;      // number of slots from $fp-2 downwards (declarations and temporaries)
+    public final int[] pointers; // offsets of the slots holding object pointers
+
+    public RootMap(int clOffset, int slots, int[] pointers) {
+        this.clOffset = clOffset;
+        this.slots = slots;
+        this.pointers = pointers;
+    }
+}
@@ -0,0 +1,12 @@
+package svm;
+
+// Error raised by the SVM while running a program (for example when memory is exhausted).
+public class SVMException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public SVMException(String message) {
+        super(message);
+    }
+
+}
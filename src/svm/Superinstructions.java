@@ -0,0 +1,102 @@
+package svm;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import static svm.Opcodes.*;
+
+// Load-time rewriting of the most frequent instruction sequences emitted by the compiler
+// (the set has been chosen by running NGramMiner over the sample programs) into superinstructions:
+//   lfp, lw x depth, push offset, add, lw  ->  LOADVAR depth offset   (IdNode variable access)
+//   push entry, lw, push offset, add, lw   ->  DISPLAYVAR entry offset (IdNode access through the display)
+//   stm, ltm, ltm                          ->  DUP                    (duplicate idiom of CallNode)
+//   lhp, push n, add, shp                  ->  BUMPHP n               (heap pointer increment)
+//   stm, pop x a, sra, pop x b, sfp, ltm, lra, js  ->  RETURN a b     (FunNode/MethodNode epilogue)
+// Rewriting is done in place: the fused opcode and its operands overwrite the head of the sequence
+// and the VM skips the rest of it, so code addresses (labels, return addresses) never change.
+// A sequence is fused only if no label points inside it.
+public class Superinstructions {
+
+    public static int fuse(int[] code, int length, Collection<Integer> labels) {
+        Set<Integer> targets = new HashSet<>(labels);
+        int fused = 0;
+        for (int pc = 0; pc < length; pc += Opcodes.length(code, pc)) {
+            int len = matchLoadVar(code, pc, length);
+            if (len > 0 && !targetInside(targets, pc, len)) {
+                int depth = len - 5;
+                int offset = code[pc + depth + 2];
+                code[pc] = LOADVAR;
+                code[pc + 1] = depth;
+                code[pc + 2] = offset;
+                fused++;
+                continue;
+            }
+            if (pc + 6 < length && code[pc] == PUSH && code[pc + 2] == LOADW && code[pc + 3] == PUSH
+                    && code[pc + 5] == ADD && code[pc + 6] == LOADW && !targetInside(targets, pc, 7)) {
+                code[pc] = DISPLAYVAR; // the entry is already in code[pc + 1]
+                code[pc + 2] = code[pc + 4];
+                fused++;
+                continue;
+            }
+            if (matches(code, pc, length, STORETM, LOADTM, LOADTM) && !targetInside(targets, pc, 3)) {
+                code[pc] = DUP;
+                fused++;
+                continue;
+            }
+            if (pc + 4 < length && code[pc] == LOADHP && code[pc + 1] == PUSH
+                    && code[pc + 3] == ADD && code[pc + 4] == STOREHP && !targetInside(targets, pc, 5)) {
+                code[pc] = BUMPHP;
+                code[pc + 1] = code[pc + 2];
+                fused++;
+                continue;
+            }
+            len = matchReturn(code, pc, length);
+            if (len > 0 && !targetInside(targets, pc, len)) {
+                int locals = 0;
+                while (code[pc + 1 + locals] == POP) locals++;
+                code[pc] = RETURN;
+                code[pc + 1] = locals;
+                code[pc + 2] = len - 6 - locals;
+                fused++;
+            }
+        }
+        return fused;
+    }
+
+    // length of a "lfp, lw x depth, push offset, add, lw" sequence starting at pc, 0 if there is none
+    private static int matchLoadVar(int[] code, int pc, int length) {
+        if (code[pc] != LOADFP) return 0;
+        int i = pc + 1;
+        while (i < length && code[i] == LOADW) i++;
+        if (i + 3 < length && code[i] == PUSH && code[i + 2] == ADD && code[i + 3] == LOADW)
+            return i + 4 - pc;
+        return 0;
+    }
+
+    // length of a "stm, pop x a, sra, pop x b, sfp, ltm, lra, js" sequence starting at pc, 0 if there is none
+    private static int matchReturn(int[] code, int pc, int length) {
+        if (code[pc] != STORETM) return 0;
+        int i = pc + 1;
+        while (i < length && code[i] == POP) i++;
+        if (i >= length || code[i++] != STORERA) return 0;
+        int start = i;
+        while (i < length && code[i] == POP) i++;
+        if (i == start) return 0; // the Access Link is always popped
+        if (matches(code, i, length, STOREFP, LOADTM, LOADRA, JS)) return i + 4 - pc;
+        return 0;
+    }
+
+    private static boolean matches(int[] code, int pc, int length, int... ops) {
+        if (pc + ops.length > length) return false;
+        for (int i = 0; i < ops.length; i++)
+            if (code[pc + i] != ops[i]) return false;
+        return true;
+    }
+
+    private static boolean targetInside(Set<Integer> targets, int pc, int len) {
+        for (int i = pc + 1; i < pc + len; i++)
+            if (targets.contains(i)) return true;
+        return false;
+    }
+}
@@ -0,0 +1,160 @@
+package svm;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Load-time verifier of SVM programs produced by the compiler. It checks that:
+// - every instruction has a valid opcode and all of its operands,
+// - branch targets are instruction starts within the same function (the code from a "function" label
+//   up to the next one, the main code before the first one),
+// - on every path of a function the stack depth is the same wherever paths merge and at every return.
+// A branch (or falling through) to the entry of another function is a tail call: that function returns
+// in place of this one, so the depth at the jump plus the depth at which the other function returns
+// must be the depth at which this one returns.
+// The depth after a call (or a "new") comes from the root map of the return address (or of the "new"),
+// so programs without root maps cannot be verified.
+// The result is the maximum depth each function reaches above its entry, which lets
+// ExecuteVM.cpuFast() check the stack size only when functions are entered.
+public class Verifier {
+
+    private final int[] code;
+    private final int length;
+    private final Map<Integer, RootMap> rootMaps;
+    private final boolean[] start; // instruction starts
+    private int[] entries; // of the functions, sorted
+    private final Map<Integer, Integer> returnDepths = new HashMap<>(); // by function entry, if it returns
+    private final List<int[]> tailCalls = new ArrayList<>(); // address, caller entry, depth, callee entry
+
+    private Verifier(int[] code, int length, Map<Integer, RootMap> rootMaps) {
+        this.code = code;
+        this.length = length;
+        this.rootMaps = rootMaps;
+        this.start = new boolean[length];
+    }
+
+    // for each function entry (and address 0 for the main code) the maximum number of words the function
+    // pushes above the stack pointer it is entered with; throws an SVMException if verification fails
+    public static int[] verify(int[] code, int length, Map<String, Integer> symbols, Map<Integer, RootMap> rootMaps) {
+        var v = new Verifier(code, length, rootMaps);
+        for (int pc = 0; pc < length; pc += Opcodes.length(code, pc)) {
+            if (!Opcodes.isValid(code[pc])) fail(pc, "invalid opcode " + code[pc]);
+            boolean fused = code[pc] == Opcodes.LOADVAR || code[pc] == Opcodes.RETURN; // length in the operands
+            if (fused && (pc + 2 >= length || code[pc + 1] < 0 || code[pc] == Opcodes.RETURN && code[pc + 2] < 0)
+                    || pc + Opcodes.length(code, pc) > length) fail(pc, "missing operands");
+            v.start[pc] = true;
+        }
+        int[] entries = symbols.entrySet().stream()
+                .filter(s -> s.getKey().startsWith("function"))
+                .mapToInt(Map.Entry::getValue).sorted().toArray();
+        v.entries = entries;
+        int[] frames = new int[length];
+        frames[0] = v.function(0, entries.length > 0 ? entries[0] : length);
+        for (int i = 0; i < entries.length; i++)
+            frames[entries[i]] = v.function(entries[i], i + 1 < entries.length ? entries[i + 1] : length);
+        v.tailCalls();
+        return frames;
+    }
+
+    // propagates the return depths through the tail calls (a function that only tail calls returns
+    // as its callees do), checking them where they are known on both sides
+    private void tailCalls() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int[] t : tailCalls) {
+                Integer callee = returnDepths.get(t[3]);
+                if (callee == null) continue;
+                Integer caller = returnDepths.putIfAbsent(t[1], t[2] + callee);
+                if (caller == null) changed = true;
+                else if (caller != t[2] + callee) fail(t[0], "stack not balanced at tail call");
+            }
+        }
+    }
+
+    // abstract interpretation of the stack depth over the function code [from, to)
+    private int function(int from, int to) {
+        if (from >= to || !start[from]) fail(from, "function without code");
+        int[] depth = new int[to - from];
+        Arrays.fill(depth, Integer.MIN_VALUE);
+        var work = new ArrayDeque<Integer>();
+        depth[0] = 0;
+        work.push(from);
+        int max = 0;
+        Integer returnDepth = null;
+        while (!work.isEmpty()) {
+            int pc = work.pop();
+            int d = depth[pc - from];
+            int next = pc + Opcodes.length(code, pc);
+            int target = -1; // second successor (a branch)
+            switch (code[pc]) {
+                case Opcodes.PUSH, Opcodes.LOADRA, Opcodes.LOADTM, Opcodes.LOADFP, Opcodes.LOADHP,
+                        Opcodes.LOADVAR, Opcodes.DISPLAYVAR, Opcodes.DUP -> d++;
+                case Opcodes.POP, Opcodes.ADD, Opcodes.SUB, Opcodes.MULT, Opcodes.DIV,
+                        Opcodes.STORERA, Opcodes.STORETM, Opcodes.STOREFP, Opcodes.STOREHP -> d--;
+                case Opcodes.STOREW -> d -= 2;
+                case Opcodes.LOADW, Opcodes.COPYFP, Opcodes.PRINT, Opcodes.BUMPHP -> { }
+                case Opcodes.BRANCH -> {
+                    target = code[pc + 1];
+                    next = -1;
+                }
+                case Opcodes.BRANCHEQ, Opcodes.BRANCHLESSEQ -> {
+                    d -= 2;
+                    target = code[pc + 1];
+                }
+                case Opcodes.NEW -> { // pops the dispatch pointer and the fields, pushes the object
+                    RootMap map = rootMaps.get(pc);
+                    if (map == null) fail(pc, "no root map for \"new\"");
+                    if (d - 2 < map.slots + 1) fail(pc, "stack underflow");
+                    d = map.slots + 2;
+                }
+                case Opcodes.JS -> {
+                    d--;
+                    RootMap map = next < to ? rootMaps.get(next) : null;
+                    if (map != null) { // a call: Control Link, arguments and Access Link are popped, the result pushed
+                        if (d < map.slots + 3) fail(pc, "stack underflow");
+                        d = map.slots + 2;
+                    } else { // a return
+                        if (returnDepth != null && returnDepth != d) fail(pc, "stack not balanced at return");
+                        returnDepth = d;
+                        next = -1;
+                    }
+                }
+                case Opcodes.RETURN -> {
+                    d -= code[pc + 1] + code[pc + 2] + 2;
+                    if (returnDepth != null && returnDepth != d) fail(pc, "stack not balanced at return");
+                    returnDepth = d;
+                    next = -1;
+                }
+                case Opcodes.HALT -> next = -1;
+                default -> fail(pc, "unexpected " + Opcodes.name(code[pc]));
+            }
+            max = Math.max(max, d);
+            if (next >= 0) flow(pc, next, d, from, to, depth, work);
+            if (target >= 0 || code[pc] == Opcodes.BRANCH) flow(pc, target, d, from, to, depth, work);
+        }
+        if (returnDepth != null) returnDepths.put(from, returnDepth);
+        return max;
+    }
+
+    private void flow(int pc, int successor, int d, int from, int to, int[] depth, ArrayDeque<Integer> work) {
+        if ((successor < from || successor >= to) && from > 0 && Arrays.binarySearch(entries, successor) >= 0) {
+            tailCalls.add(new int[] {pc, from, d, successor});
+            return;
+        }
+        if (successor < from || successor >= to || !start[successor])
+            fail(pc, "jump to " + successor + " out of the function or inside an instruction");
+        int known = depth[successor - from];
+        if (known == Integer.MIN_VALUE) {
+            depth[successor - from] = d;
+            work.push(successor);
+        } else if (known != d) fail(successor, "stack not balanced (" + known + " and " + d + " words)");
+    }
+
+    private static void fail(int pc, String message) {
+        throw new SVMException("Verification failed at address " + pc + ": " + message);
+    }
+}
@@ -235,6 +235,12 @@ public class ExecuteVM {
         }
     }
 
+    // the compiler addresses the global frame relative to the stack base (address 0, growing downwards),
+    // which is at the top of memory here
+    private int absolute(int address) {
+        return address < 0 ? MEMSIZE + address : address;
+    }
+
     private boolean step() {
         int bytecode = fetch();
         int v1, v2;
@@ -268,11 +274,11 @@ public class ExecuteVM {
                 push(v2 / v1);
                 break;
             case SVMParser.STOREW:
-                address = pop();
+                address = absolute(pop());
                 memory[address] = pop();
                 break;
             case SVMParser.LOADW:
-                push(memory[pop()]);
+                push(memory[absolute(pop())]);
                 break;
             case SVMParser.BRANCH:
                 ip = fetch();
@@ -328,6 +334,14 @@ public class ExecuteVM {
                 break;
             case SVMParser.HALT:
                 return false;
+            case SVMParser.NEW: // no garbage collection here: the object is just appended to the heap
+                v1 = pop(); // dispatch pointer, preceded by the class descriptor (number of fields at v1-1)
+                address = hp + memory[v1 - 1];
+                for (int i = memory[v1 - 1] - 1; i >= 0; i--) memory[address - 1 - i] = pop();
+                memory[address] = v1;
+                hp = address + 1;
+                push(address);
+                break;
         }
         if (this.sp <= this.hp) {
             System.out.println("Segmentation fault");
@@ -56,6 +56,7 @@ instruction:
 	  | t=STOREHP              { codem($t.line, STOREHP); } //pop the top of the stack and copy it in the HP register
 	  | t=PRINT                { codem($t.line, PRINT); } //visualize the top of the stack without removing it
 	  | t=HALT                 { codem($t.line, HALT); } //terminate the execution
+	  | t=NEW                  { codem($t.line, NEW); } //pop a dispatch pointer and the field values: store them in a new object and push its address
 	  ;
 
 /*------------------------------------------------------------------
@@ -85,6 +86,7 @@ LOADHP	 	: 'lhp' ;
 STOREHP	 	: 'shp' ;
 PRINT	 	: 'print' ;
 HALT	 	: 'halt' ;
+NEW	 		: 'new' ;
 
 COL	 		: ':' ;
 LABEL	 	: ('a'..'z'|'A'..'Z')('a'..'z' | 'A'..'Z' | '0'..'9')* ;